@@ -0,0 +1,209 @@
+package com.nttdata.bankapp.msdebitcardservice.cache;
+
+import com.nttdata.bankapp.msdebitcardservice.model.DebitCard;
+import com.nttdata.bankapp.msdebitcardservice.repository.DebitCardRepository;
+import com.nttdata.bankapp.msdebitcardservice.support.CardNumberGenerator;
+import com.nttdata.bankapp.msdebitcardservice.support.CardNumbers;
+import com.nttdata.bankapp.msdebitcardservice.support.LongHashSet;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Registro en memoria de los números de tarjeta existentes, como conjunto compacto de long.
+ * Permite responder 404 sin consultar Mongo para números con formato inválido o inexistentes.
+ * Se carga al iniciar y se mantiene al día con un change stream de las altas de todas las instancias.
+ * Una ausencia solo es definitiva mientras el change stream está activo y al día; si se cae,
+ * las búsquedas vuelven a Mongo hasta que se reanuda y se recuperan las altas perdidas.
+ * Un alta hecha en otra instancia es visible aquí tras la demora del change stream, normalmente
+ * de milisegundos. Las bajas de otras instancias no se propagan: solo generan consultas a Mongo.
+ */
+@Component
+@Slf4j
+public class CardNumberRegistry {
+    private static final Duration RESUME_DELAY = Duration.ofSeconds(5);
+    // Margen para diferencias de reloj entre instancias al comparar createdAt y al reanudar el change stream
+    private static final Duration CLOCK_SKEW = Duration.ofMinutes(1);
+
+    private final DebitCardRepository debitCardRepository;
+    private final CardNumberGenerator cardNumberGenerator;
+    private final LongHashSet cardNumbers;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Counter malformedLookups;
+    private final Counter unknownLookups;
+    private final Counter unverifiedLookups;
+    private volatile boolean authoritative;
+    private volatile LocalDateTime syncedUntil;
+    private Disposable watchTask;
+
+    public CardNumberRegistry(DebitCardRepository debitCardRepository,
+                              CardNumberGenerator cardNumberGenerator,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.card.registry.expected-size:1000000}") int expectedSize) {
+        this.debitCardRepository = debitCardRepository;
+        this.cardNumberGenerator = cardNumberGenerator;
+        this.cardNumbers = new LongHashSet(expectedSize);
+        this.malformedLookups = rejectedLookups(meterRegistry, "malformed");
+        this.unknownLookups = rejectedLookups(meterRegistry, "unknown");
+        this.unverifiedLookups = Counter.builder("card.number.registry.unverified")
+                .description("Búsquedas por número derivadas a la base de datos con el registro desactualizado")
+                .register(meterRegistry);
+        Gauge.builder("card.number.registry.size", this, CardNumberRegistry::size)
+                .description("Números de tarjeta en el registro")
+                .register(meterRegistry);
+        Gauge.builder("card.number.registry.authoritative", this, registry -> registry.authoritative ? 1 : 0)
+                .description("1 si las ausencias en el registro son definitivas")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Carga los números de tarjeta existentes y empieza a seguir las altas.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        LocalDateTime loadStartedAt = LocalDateTime.now();
+        // La carga inicial no depende del change stream, para alimentar el generador aunque Mongo no sea replica set
+        debitCardRepository.findAllCardNumbers()
+                .doOnNext(this::register)
+                .count()
+                .subscribe(count -> {
+                    syncedUntil = loadStartedAt;
+                    log.info("Loaded {} card numbers into the registry", count);
+                    watchTask = Mono.defer(this::watch)
+                            .repeatWhen(completed -> completed.delayElements(RESUME_DELAY))
+                            .retryWhen(Retry.fixedDelay(Long.MAX_VALUE, RESUME_DELAY)
+                                    .doBeforeRetry(signal -> log.warn("Card number change stream failed, "
+                                            + "lookups will query Mongo until it resumes: {}", signal.failure().getMessage())))
+                            .subscribe();
+                }, e -> log.error("Error loading card numbers, lookups will always query Mongo: {}", e.getMessage()));
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (watchTask != null) {
+            watchTask.dispose();
+        }
+    }
+
+    /**
+     * Indica si el número de tarjeta puede existir.
+     * @param cardNumber Número de tarjeta
+     * @return false si el número seguro no existe
+     */
+    public boolean mightExist(String cardNumber) {
+        long value = CardNumbers.parse(cardNumber);
+        if (value == CardNumbers.INVALID) {
+            malformedLookups.increment();
+            return false;
+        }
+        if (contains(value)) {
+            return true;
+        }
+        if (!authoritative) {
+            unverifiedLookups.increment();
+            return true;
+        }
+        unknownLookups.increment();
+        return false;
+    }
+
+    /**
+     * Registra el número de una tarjeta creada.
+     * @param cardNumber Número de tarjeta
+     */
+    public void add(String cardNumber) {
+        long value = CardNumbers.parse(cardNumber);
+        if (value != CardNumbers.INVALID) {
+            cardNumberGenerator.markIssued(value);
+            lock.writeLock().lock();
+            try {
+                cardNumbers.add(value);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Quita el número de una tarjeta eliminada.
+     * @param cardNumber Número de tarjeta
+     */
+    public void remove(String cardNumber) {
+        long value = CardNumbers.parse(cardNumber);
+        if (value != CardNumbers.INVALID) {
+            lock.writeLock().lock();
+            try {
+                cardNumbers.remove(value);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Sigue las altas desde ahora y recupera con una consulta las hechas desde la última sincronización.
+     * El registro es autoritativo solo desde que termina esa recuperación hasta que el change stream termina.
+     */
+    private Mono<Void> watch() {
+        LocalDateTime watchStartedAt = LocalDateTime.now();
+        Instant streamFrom = watchStartedAt.minus(CLOCK_SKEW).atZone(ZoneId.systemDefault()).toInstant();
+        Mono<Void> inserts = debitCardRepository.watchInsertedCardNumbers(streamFrom)
+                .doOnNext(this::add)
+                .then();
+        Mono<Void> catchUp = debitCardRepository.findCardNumbersCreatedAfter(syncedUntil.minus(CLOCK_SKEW))
+                .doOnNext(this::register)
+                .then(Mono.fromRunnable(() -> {
+                    syncedUntil = watchStartedAt;
+                    authoritative = true;
+                    log.info("Card number registry is up to date, unknown numbers are rejected without querying Mongo");
+                }));
+        // El change stream empieza antes que la ventana de la consulta, así que ninguna alta queda sin cubrir
+        return Mono.when(inserts, catchUp)
+                .doFinally(signal -> authoritative = false);
+    }
+
+    private void register(DebitCard debitCard) {
+        add(debitCard.getCardNumber());
+    }
+
+    private boolean contains(long value) {
+        lock.readLock().lock();
+        try {
+            return cardNumbers.contains(value);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int size() {
+        lock.readLock().lock();
+        try {
+            return cardNumbers.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Counter rejectedLookups(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("card.number.registry.rejected")
+                .description("Búsquedas por número rechazadas sin consultar la base de datos")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,73 @@
+package com.nttdata.bankapp.msdebitcardservice.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nttdata.bankapp.msdebitcardservice.model.DebitCard;
+import com.nttdata.bankapp.msdebitcardservice.repository.DebitCardRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Caché en memoria de tarjetas de débito para las rutas de lectura frecuente
+ * (movimientos y saldo). Solo consulta Mongo ante un fallo de caché.
+ * Solo se invalida en la instancia local, así que los pagos no la usan para autorizar.
+ */
+@Component
+@Slf4j
+public class DebitCardCache {
+    private final DebitCardRepository debitCardRepository;
+    private final Cache<String, DebitCard> cache;
+
+    public DebitCardCache(DebitCardRepository debitCardRepository,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.cache.debit-card.maximum-size:10000}") long maximumSize,
+                          @Value("${app.cache.debit-card.ttl:5m}") Duration ttl) {
+        this.debitCardRepository = debitCardRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "debitCards");
+    }
+
+    /**
+     * Obtiene una tarjeta por su ID, primero desde la caché y luego desde Mongo.
+     * La instancia devuelta es compartida y no debe modificarse.
+     * @param id ID de la tarjeta
+     * @return Mono<DebitCard> vacío si no existe
+     */
+    public Mono<DebitCard> findById(String id) {
+        DebitCard cached = cache.getIfPresent(id);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return debitCardRepository.findById(id)
+                .doOnNext(this::put);
+    }
+
+    /**
+     * Guarda o refresca una tarjeta en la caché.
+     * @param debitCard Tarjeta a guardar
+     */
+    public void put(DebitCard debitCard) {
+        if (debitCard.getId() != null) {
+            cache.put(debitCard.getId(), debitCard);
+        }
+    }
+
+    /**
+     * Elimina una tarjeta de la caché.
+     * @param id ID de la tarjeta
+     */
+    public void invalidate(String id) {
+        log.debug("Invalidating cached debit card id: {}", id);
+        cache.invalidate(id);
+    }
+}
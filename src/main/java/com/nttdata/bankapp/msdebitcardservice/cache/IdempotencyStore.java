@@ -0,0 +1,142 @@
+package com.nttdata.bankapp.msdebitcardservice.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nttdata.bankapp.msdebitcardservice.dto.TransactionDto;
+import com.nttdata.bankapp.msdebitcardservice.exception.IdempotencyConflictException;
+import com.nttdata.bankapp.msdebitcardservice.exception.InvalidOperationException;
+import com.nttdata.bankapp.msdebitcardservice.model.IdempotencyRecord;
+import com.nttdata.bankapp.msdebitcardservice.model.IdempotencyStatus;
+import com.nttdata.bankapp.msdebitcardservice.repository.IdempotencyRecordRepository;
+import com.nttdata.bankapp.msdebitcardservice.support.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.function.Supplier;
+
+/**
+ * Almacén de resultados de pagos por clave de idempotencia, en dos niveles:
+ * una caché LRU en memoria delante de una colección Mongo con índice TTL.
+ * Antes de ejecutar un pago se reserva la clave con un registro PENDING; solo la instancia
+ * que logra insertarlo ejecuta el pago, y los duplicados esperan su resultado.
+ */
+@Component
+@Slf4j
+public class IdempotencyStore {
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final Cache<String, IdempotencyRecord> recentRecords;
+    private final SingleFlight singleFlight;
+    private final Duration pollInterval;
+    private final long maxPolls;
+
+    public IdempotencyStore(IdempotencyRecordRepository idempotencyRecordRepository,
+                            SingleFlight singleFlight,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.idempotency.cache.maximum-size:10000}") long maximumSize,
+                            @Value("${app.idempotency.ttl:24h}") Duration ttl,
+                            @Value("${app.idempotency.poll-interval:50ms}") Duration pollInterval,
+                            @Value("${app.idempotency.poll-timeout:1s}") Duration pollTimeout) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.singleFlight = singleFlight;
+        this.pollInterval = pollInterval;
+        this.maxPolls = Math.max(1, pollTimeout.toMillis() / Math.max(1, pollInterval.toMillis()));
+        // Misma vigencia que el índice TTL de Mongo, para no reproducir una clave ya expirada
+        this.recentRecords = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, recentRecords, "idempotencyKeys");
+    }
+
+    /**
+     * Ejecuta la operación una sola vez por clave. Si la clave ya fue usada, devuelve
+     * el resultado almacenado sin volver a ejecutar la operación.
+     * @param key Clave de idempotencia
+     * @param requestFingerprint Huella de la solicitud, para detectar claves reutilizadas
+     * @param operation Operación a ejecutar
+     * @return Mono<TransactionDto> con el resultado original, o IdempotencyConflictException
+     *         si otro intento con la misma clave sigue en curso
+     */
+    public Mono<TransactionDto> execute(String key, String requestFingerprint, Supplier<Mono<TransactionDto>> operation) {
+        return Mono.defer(() -> {
+            IdempotencyRecord cached = recentRecords.getIfPresent(key);
+            Mono<IdempotencyRecord> record = cached != null
+                    ? Mono.just(cached)
+                    : singleFlight.execute("idempotency", key, () -> claimOrAwait(key, requestFingerprint, operation));
+
+            return record.flatMap(result -> {
+                if (!result.getRequestFingerprint().equals(requestFingerprint)) {
+                    return Mono.error(new InvalidOperationException(
+                            "Idempotency key " + key + " was already used with a different request"));
+                }
+                return Mono.just(result.getTransaction());
+            });
+        });
+    }
+
+    private Mono<IdempotencyRecord> claimOrAwait(String key, String requestFingerprint,
+                                                 Supplier<Mono<TransactionDto>> operation) {
+        IdempotencyRecord claim = IdempotencyRecord.builder()
+                .key(key)
+                .requestFingerprint(requestFingerprint)
+                .status(IdempotencyStatus.PENDING)
+                .createdAt(LocalDateTime.now())
+                .build();
+
+        // El _id único hace que solo una instancia logre reservar la clave
+        return idempotencyRecordRepository.insert(claim)
+                .map(inserted -> true)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.just(false))
+                .flatMap(claimed -> claimed
+                        ? executeClaimed(claim, operation)
+                        : awaitCompletion(key, requestFingerprint))
+                .doOnNext(record -> {
+                    if (record.getStatus() != IdempotencyStatus.PENDING) {
+                        recentRecords.put(key, record);
+                    }
+                });
+    }
+
+    private Mono<IdempotencyRecord> executeClaimed(IdempotencyRecord claim, Supplier<Mono<TransactionDto>> operation) {
+        return Mono.defer(operation)
+                .flatMap(transaction -> {
+                    claim.setStatus(IdempotencyStatus.COMPLETED);
+                    claim.setTransaction(transaction);
+                    return idempotencyRecordRepository.save(claim)
+                            // El pago ya se hizo: devolverlo aunque no se haya podido guardar el resultado
+                            .onErrorResume(e -> {
+                                log.error("Error storing result for idempotency key {}: {}", claim.getKey(), e.getMessage());
+                                return Mono.just(claim);
+                            });
+                })
+                // Liberar la clave para que el cliente pueda reintentar el pago fallido
+                .onErrorResume(e -> idempotencyRecordRepository.deleteById(claim.getKey())
+                        .onErrorResume(deleteError -> {
+                            log.error("Error releasing idempotency key {}: {}", claim.getKey(), deleteError.getMessage());
+                            return Mono.empty();
+                        })
+                        .then(Mono.error(e)));
+    }
+
+    private Mono<IdempotencyRecord> awaitCompletion(String key, String requestFingerprint) {
+        log.info("Idempotency key {} is claimed by another request, waiting for its result", key);
+        return idempotencyRecordRepository.findById(key)
+                .switchIfEmpty(Mono.error(() -> new IdempotencyConflictException(
+                        "The previous request with idempotency key " + key + " failed, please retry")))
+                // Con otra huella no hace falta esperar: la solicitud se rechaza igual
+                .filter(record -> record.getStatus() != IdempotencyStatus.PENDING
+                        || !record.getRequestFingerprint().equals(requestFingerprint))
+                .repeatWhenEmpty(polls -> polls.take(maxPolls).delayElements(pollInterval))
+                .switchIfEmpty(Mono.error(() -> new IdempotencyConflictException(
+                        "A request with idempotency key " + key + " is still in progress")))
+                .doOnNext(record -> log.info("Replaying stored result for idempotency key: {}", key));
+    }
+}
@@ -0,0 +1,251 @@
+package com.nttdata.bankapp.msdebitcardservice.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nttdata.bankapp.msdebitcardservice.dto.TransactionDto;
+import com.nttdata.bankapp.msdebitcardservice.model.RecentMovement;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Movimientos recientes por tarjeta, en un buffer circular en memoria por tarjeta,
+ * persistidos en una colección capped de Mongo.
+ * Cada instancia lee la colección con un cursor tailable, así que también ve los pagos
+ * procesados por otras instancias. Mientras no haya huecos, un buffer con al menos N entradas
+ * contiene los últimos N movimientos de pago de la tarjeta. Cuando puede haber un hueco
+ * (colección aún no lista, inserción fallida o cursor reiniciado) se descartan los buffers
+ * afectados y las consultas van al servicio de transacciones hasta que se vuelvan a llenar.
+ */
+@Component
+@Slf4j
+public class RecentMovementStore {
+    private static final Duration RESUME_DELAY = Duration.ofSeconds(1);
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final Cache<String, MovementRing> rings;
+    private final Counter localLookups;
+    private final Counter remoteLookups;
+    private final int capacity;
+    private final long collectionSize;
+    private final long maxDocuments;
+    private volatile boolean collectionReady;
+    private volatile boolean tailing;
+    private volatile boolean tailStarted;
+    private volatile String lastSeenId;
+    private Disposable tailTask;
+
+    public RecentMovementStore(ReactiveMongoTemplate reactiveMongoTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.movements.recent.capacity:20}") int capacity,
+                               @Value("${app.movements.recent.maximum-cards:100000}") long maximumCards,
+                               @Value("${app.movements.recent.collection-size-bytes:67108864}") long collectionSize,
+                               @Value("${app.movements.recent.max-documents:500000}") long maxDocuments) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.capacity = capacity;
+        this.collectionSize = collectionSize;
+        this.maxDocuments = maxDocuments;
+        this.rings = Caffeine.newBuilder()
+                .maximumSize(maximumCards)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, rings, "recentMovements");
+        this.localLookups = Counter.builder("movements.recent.lookups")
+                .description("Consultas de movimientos respondidas desde el buffer local")
+                .tag("source", "local")
+                .register(meterRegistry);
+        this.remoteLookups = Counter.builder("movements.recent.lookups")
+                .description("Consultas de movimientos derivadas al servicio de transacciones")
+                .tag("source", "remote")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Crea la colección capped si no existe y empieza a leerla con un cursor tailable.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        tailTask = ensureCollection()
+                .doOnSuccess(ignored -> collectionReady = true)
+                // En una colección vacía el cursor termina de inmediato: reanudar tras una pausa
+                .thenMany(Flux.defer(this::tail)
+                        .doOnSubscribe(subscription -> resumeTail())
+                        .doFinally(signal -> tailing = false)
+                        .repeatWhen(completed -> completed.delayElements(RESUME_DELAY)))
+                .retryWhen(Retry.fixedDelay(Long.MAX_VALUE, RESUME_DELAY)
+                        .doBeforeRetry(signal -> log.warn("Recent movements cursor failed, resuming: {}",
+                                signal.failure().getMessage())))
+                .subscribe(this::apply);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (tailTask != null) {
+            tailTask.dispose();
+        }
+    }
+
+    /**
+     * Registra la transacción de un pago en el buffer de la tarjeta y la persiste.
+     * La persistencia no bloquea al llamador. Si no se puede persistir, el buffer de la tarjeta
+     * se descarta, porque ya no refleja lo que ven las demás instancias.
+     * @param debitCardId ID de la tarjeta
+     * @param transaction Transacción creada
+     */
+    public void record(String debitCardId, TransactionDto transaction) {
+        if (!collectionReady) {
+            rings.invalidate(debitCardId);
+            return;
+        }
+        rings.get(debitCardId, id -> new MovementRing(capacity)).add(transaction);
+        reactiveMongoTemplate.insert(RecentMovement.builder()
+                        .debitCardId(debitCardId)
+                        .transaction(transaction)
+                        .build())
+                .subscribe(saved -> { },
+                        e -> {
+                            log.warn("Error persisting recent movement for debit card {}: {}",
+                                    debitCardId, e.getMessage());
+                            rings.invalidate(debitCardId);
+                        });
+    }
+
+    /**
+     * Obtiene los últimos movimientos de una tarjeta, del más reciente al más antiguo,
+     * solo si el buffer local tiene al menos la cantidad pedida.
+     * @param debitCardId ID de la tarjeta
+     * @param limit Cantidad de movimientos
+     * @return Mono con la lista de transacciones, vacío si hay que consultar el servicio de transacciones
+     */
+    public Mono<List<TransactionDto>> latest(String debitCardId, int limit) {
+        return Mono.fromSupplier(() -> {
+            // Sin cursor activo pueden faltar movimientos de otras instancias
+            MovementRing ring = tailing ? rings.getIfPresent(debitCardId) : null;
+            List<TransactionDto> transactions = ring != null ? ring.latest(limit) : null;
+            if (transactions == null) {
+                remoteLookups.increment();
+                return null;
+            }
+            localLookups.increment();
+            return transactions;
+        });
+    }
+
+    /**
+     * Descarta el buffer de una tarjeta eliminada.
+     * @param debitCardId ID de la tarjeta
+     */
+    public void invalidate(String debitCardId) {
+        rings.invalidate(debitCardId);
+    }
+
+    private Mono<Void> ensureCollection() {
+        return reactiveMongoTemplate.collectionExists(RecentMovement.class)
+                .flatMap(exists -> exists
+                        ? Mono.<Void>empty()
+                        : reactiveMongoTemplate.createCollection(RecentMovement.class, CollectionOptions.empty()
+                                        .capped()
+                                        .size(collectionSize)
+                                        .maxDocuments(maxDocuments))
+                                .doOnNext(collection -> log.info("Created capped collection for recent movements"))
+                                // Otra instancia pudo crearla al mismo tiempo
+                                .onErrorResume(e -> reactiveMongoTemplate.collectionExists(RecentMovement.class)
+                                        .flatMap(created -> created ? Mono.empty() : Mono.error(e)))
+                                .then());
+    }
+
+    private void resumeTail() {
+        // Un cursor reiniciado pudo perder movimientos que la colección capped ya descartó,
+        // o no haber entregado aún los registrados localmente
+        if (tailStarted) {
+            log.debug("Recent movements cursor resumed, discarding local buffers");
+            rings.invalidateAll();
+        }
+        tailStarted = true;
+        tailing = true;
+    }
+
+    private Flux<RecentMovement> tail() {
+        Query query = lastSeenId == null
+                ? new Query()
+                : Query.query(Criteria.where("_id").gt(new ObjectId(lastSeenId)));
+        return reactiveMongoTemplate.tail(query, RecentMovement.class);
+    }
+
+    private void apply(RecentMovement movement) {
+        lastSeenId = movement.getId();
+        if (movement.getDebitCardId() != null && movement.getTransaction() != null) {
+            rings.get(movement.getDebitCardId(), id -> new MovementRing(capacity)).add(movement.getTransaction());
+        }
+    }
+
+    /**
+     * Buffer circular de tamaño fijo con las últimas transacciones de una tarjeta.
+     */
+    private static final class MovementRing {
+        private final TransactionDto[] entries;
+        private int next;
+        private int size;
+
+        MovementRing(int capacity) {
+            this.entries = new TransactionDto[capacity];
+        }
+
+        synchronized void add(TransactionDto transaction) {
+            // La transacción propia llega dos veces: al registrarla y desde el cursor
+            String key = dedupKey(transaction);
+            if (key != null && contains(key)) {
+                return;
+            }
+            entries[next] = transaction;
+            next = (next + 1) % entries.length;
+            if (size < entries.length) {
+                size++;
+            }
+        }
+
+        synchronized List<TransactionDto> latest(int limit) {
+            if (limit > size) {
+                return null;
+            }
+            List<TransactionDto> result = new ArrayList<>(limit);
+            for (int i = 1; i <= limit; i++) {
+                result.add(entries[Math.floorMod(next - i, entries.length)]);
+            }
+            return result;
+        }
+
+        private boolean contains(String key) {
+            for (int i = 1; i <= size; i++) {
+                if (key.equals(dedupKey(entries[Math.floorMod(next - i, entries.length)]))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Las transacciones encoladas en el outbox aún no tienen ID, solo la referencia de la entrada
+        private static String dedupKey(TransactionDto transaction) {
+            return transaction.getId() != null ? transaction.getId() : transaction.getReference();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.nttdata.bankapp.msdebitcardservice.client;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Resuelve números de cuenta en lote, eliminando IDs repetidos y cacheando los resultados,
+ * ya que el número de una cuenta no cambia.
+ */
+@Component
+public class AccountNumberResolver {
+    private final AccountService accountService;
+    private final Cache<String, String> cache;
+    private final int concurrency;
+
+    public AccountNumberResolver(AccountService accountService,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.cache.account-number.maximum-size:50000}") long maximumSize,
+                                 @Value("${app.cache.account-number.ttl:24h}") Duration ttl,
+                                 @Value("${app.cache.account-number.concurrency:8}") int concurrency) {
+        this.accountService = accountService;
+        this.concurrency = concurrency;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "accountNumbers");
+    }
+
+    /**
+     * Obtiene el número de una cuenta.
+     * @param accountId ID de la cuenta
+     * @return Mono<String>
+     */
+    public Mono<String> resolve(String accountId) {
+        String cached = cache.getIfPresent(accountId);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return fetch(accountId);
+    }
+
+    /**
+     * Obtiene los números de un conjunto de cuentas, con a lo sumo una llamada
+     * al servicio de cuentas por cada ID distinto no cacheado.
+     * @param accountIds IDs de las cuentas (puede contener repetidos)
+     * @return Mono con el mapa ID de cuenta -> número de cuenta
+     */
+    public Mono<Map<String, String>> resolveAll(Collection<String> accountIds) {
+        Set<String> distinctIds = accountIds.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        Map<String, String> resolved = new HashMap<>(cache.getAllPresent(distinctIds));
+        List<String> missingIds = distinctIds.stream()
+                .filter(accountId -> !resolved.containsKey(accountId))
+                .collect(Collectors.toList());
+
+        if (missingIds.isEmpty()) {
+            return Mono.just(resolved);
+        }
+
+        return Flux.fromIterable(missingIds)
+                .flatMap(accountId -> fetch(accountId)
+                        .map(accountNumber -> Tuples.of(accountId, accountNumber)), concurrency)
+                .collectMap(Tuple2::getT1, Tuple2::getT2, () -> resolved);
+    }
+
+    private Mono<String> fetch(String accountId) {
+        return accountService.getAccountNumber(accountId)
+                .doOnNext(accountNumber -> cache.put(accountId, accountNumber));
+    }
+}
@@ -1,23 +1,73 @@
 package com.nttdata.bankapp.msdebitcardservice.client;
 
+import com.nttdata.bankapp.msdebitcardservice.config.DownstreamWebClientFactory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.nttdata.bankapp.msdebitcardservice.dto.BalanceDto;
+import com.nttdata.bankapp.msdebitcardservice.dto.WithdrawalResultDto;
+import com.nttdata.bankapp.msdebitcardservice.exception.ConcurrencyLimitExceededException;
+import com.nttdata.bankapp.msdebitcardservice.support.RequestHedger;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.Builder;
 import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Cliente para el servicio de cuentas.
  */
 @Component
+@Slf4j
 public class AccountService {
+    private static final ParameterizedTypeReference<Map<String, Boolean>> OWNERSHIP_RESULT_TYPE =
+            new ParameterizedTypeReference<Map<String, Boolean>>() { };
+
     private final WebClient webClient;
+    private final RequestHedger hedger;
+    private final Cache<String, Boolean> ownershipCache;
+    private final Cache<String, BalanceDto> balanceCache;
+    private final int ownershipFallbackConcurrency;
 
-    public AccountService(WebClient.Builder webClientBuilder) {
-        this.webClient = webClientBuilder.baseUrl("http://ms-account-service").build();
+    public AccountService(DownstreamWebClientFactory webClientFactory,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.cache.account-ownership.maximum-size:50000}") long ownershipMaximumSize,
+                          @Value("${app.cache.account-ownership.ttl:10m}") Duration ownershipTtl,
+                          @Value("${app.cache.account-ownership.fallback-concurrency:4}") int ownershipFallbackConcurrency,
+                          @Value("${app.cache.balance.maximum-size:100000}") long balanceMaximumSize,
+                          @Value("${app.cache.balance.ttl:5s}") Duration balanceTtl) {
+        this.webClient = webClientFactory.create("account", "http://ms-account-service");
+        this.hedger = webClientFactory.createHedger("account");
+        this.ownershipFallbackConcurrency = ownershipFallbackConcurrency;
+        this.ownershipCache = Caffeine.newBuilder()
+                .maximumSize(ownershipMaximumSize)
+                .expireAfterWrite(ownershipTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, ownershipCache, "accountOwnership");
+        this.balanceCache = Caffeine.newBuilder()
+                .maximumSize(balanceMaximumSize)
+                .expireAfterWrite(balanceTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, balanceCache, "accountBalances");
     }
 
     /**
@@ -26,11 +76,12 @@ public class AccountService {
      * @return Mono<Boolean>
      */
     public Mono<Boolean> accountExists(String accountId) {
-        return webClient.get()
-                .uri("/accounts/{id}/exists", accountId)
-                .retrieve()
-                .bodyToMono(Boolean.class)
-                .onErrorReturn(false);
+        return hedger.execute(() -> webClient.get()
+                        .uri("/accounts/{id}/exists", accountId)
+                        .retrieve()
+                        .bodyToMono(Boolean.class))
+                // Un rechazo por límite de concurrencia no significa que la cuenta no exista
+                .onErrorReturn(e -> !(e instanceof ConcurrencyLimitExceededException), false);
     }
 
     /**
@@ -40,11 +91,80 @@ public class AccountService {
      * @return Mono<Boolean>
      */
     public Mono<Boolean> verifyAccountOwnership(String accountId, String customerId) {
+        Boolean cached = ownershipCache.getIfPresent(ownershipKey(accountId, customerId));
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return fetchAccountOwnership(accountId, customerId)
+                .onErrorReturn(e -> !(e instanceof ConcurrencyLimitExceededException), false);
+    }
+
+    /**
+     * Verifica en una sola solicitud que un conjunto de cuentas pertenezca a un cliente.
+     * Los IDs repetidos se eliminan y solo se consultan las cuentas sin resultado cacheado.
+     * @param accountIds IDs de las cuentas
+     * @param customerId ID del cliente
+     * @return Mono con el mapa ID de cuenta -> pertenece al cliente
+     */
+    public Mono<Map<String, Boolean>> verifyAccountsOwnership(Collection<String> accountIds, String customerId) {
+        return Mono.defer(() -> verifyPendingOwnership(accountIds, customerId));
+    }
+
+    private Mono<Map<String, Boolean>> verifyPendingOwnership(Collection<String> accountIds, String customerId) {
+        Map<String, Boolean> results = new HashMap<>();
+        List<String> pendingIds = new ArrayList<>();
+        for (String accountId : new LinkedHashSet<>(accountIds)) {
+            Boolean cached = ownershipCache.getIfPresent(ownershipKey(accountId, customerId));
+            if (cached != null) {
+                results.put(accountId, cached);
+            } else {
+                pendingIds.add(accountId);
+            }
+        }
+
+        if (pendingIds.isEmpty()) {
+            return Mono.just(results);
+        }
+
+        return webClient.post()
+                .uri("/accounts/owner/{customerId}/verify", customerId)
+                .bodyValue(new OwnershipVerificationRequest(pendingIds))
+                .retrieve()
+                .bodyToMono(OWNERSHIP_RESULT_TYPE)
+                .onErrorResume(WebClientResponseException.NotFound.class, e -> {
+                    // El servicio de cuentas no expone la verificación en lote: verificar cuenta por cuenta
+                    log.warn("Bulk ownership verification not available, verifying {} accounts one by one",
+                            pendingIds.size());
+                    return Flux.fromIterable(pendingIds)
+                            .flatMap(accountId -> fetchAccountOwnership(accountId, customerId)
+                                    .map(isOwner -> Tuples.of(accountId, isOwner)), ownershipFallbackConcurrency)
+                            .collectMap(tuple -> tuple.getT1(), tuple -> tuple.getT2());
+                })
+                .map(fetched -> {
+                    for (String accountId : pendingIds) {
+                        boolean isOwner = Boolean.TRUE.equals(fetched.get(accountId));
+                        ownershipCache.put(ownershipKey(accountId, customerId), isOwner);
+                        results.put(accountId, isOwner);
+                    }
+                    return results;
+                })
+                .onErrorResume(e -> !(e instanceof ConcurrencyLimitExceededException), e -> {
+                    log.error("Error verifying ownership of accounts {}: {}", pendingIds, e.getMessage());
+                    pendingIds.forEach(accountId -> results.put(accountId, false));
+                    return Mono.just(results);
+                });
+    }
+
+    private Mono<Boolean> fetchAccountOwnership(String accountId, String customerId) {
         return webClient.get()
                 .uri("/accounts/{id}/owner/{customerId}", accountId, customerId)
                 .retrieve()
                 .bodyToMono(Boolean.class)
-                .onErrorReturn(false);
+                .doOnNext(isOwner -> ownershipCache.put(ownershipKey(accountId, customerId), isOwner));
+    }
+
+    private static String ownershipKey(String accountId, String customerId) {
+        return accountId + ":" + customerId;
     }
 
     /**
@@ -53,10 +173,42 @@ public class AccountService {
      * @return Mono<BalanceDto>
      */
     public Mono<BalanceDto> getBalance(String accountId) {
-        return webClient.get()
-                .uri("/accounts/{id}/balance", accountId)
-                .retrieve()
-                .bodyToMono(BalanceDto.class);
+        return hedger.execute(() -> webClient.get()
+                        .uri("/accounts/{id}/balance", accountId)
+                        .retrieve()
+                        .bodyToMono(BalanceDto.class))
+                .doOnNext(balance -> cacheBalance(accountId, balance));
+    }
+
+    /**
+     * Obtiene el saldo de una cuenta desde la caché de vida corta y, si no está, desde el servicio de cuentas.
+     * El saldo puede tener hasta el TTL de antigüedad: no debe usarse para aprobar débitos.
+     * @param accountId ID de la cuenta
+     * @return Mono<BalanceDto>
+     */
+    public Mono<BalanceDto> getCachedBalance(String accountId) {
+        BalanceDto cached = balanceCache.getIfPresent(accountId);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return getBalance(accountId);
+    }
+
+    /**
+     * Indica si el último saldo conocido de la cuenta no cubre el monto. Sin saldo cacheado responde false.
+     * @param accountId ID de la cuenta
+     * @param amount Monto a cubrir
+     * @return true si se sabe que la cuenta no tiene fondos suficientes
+     */
+    public boolean isKnownInsufficient(String accountId, BigDecimal amount) {
+        BalanceDto cached = balanceCache.getIfPresent(accountId);
+        return cached != null && cached.getBalance() != null && cached.getBalance().compareTo(amount) < 0;
+    }
+
+    private void cacheBalance(String accountId, BalanceDto balance) {
+        if (balance != null && balance.getBalance() != null) {
+            balanceCache.put(accountId, balance);
+        }
     }
 
     /**
@@ -70,7 +222,39 @@ public class AccountService {
                 .uri("/accounts/{id}/balance", accountId)
                 .bodyValue(new BalanceUpdateRequest(amount))
                 .retrieve()
-                .bodyToMono(BalanceDto.class);
+                .bodyToMono(BalanceDto.class)
+                .doOnNext(balance -> cacheBalance(accountId, balance));
+    }
+
+    /**
+     * Retira un monto solo si el saldo de la cuenta es suficiente, en una única operación
+     * atómica del servicio de cuentas.
+     * @param accountId ID de la cuenta
+     * @param amount Monto a retirar (positivo)
+     * @return Mono<WithdrawalResultDto> aprobado con el nuevo saldo, o rechazado por fondos insuficientes
+     */
+    public Mono<WithdrawalResultDto> withdrawIfSufficient(String accountId, BigDecimal amount) {
+        return webClient.post()
+                .uri("/accounts/{id}/conditional-withdrawal", accountId)
+                .bodyValue(new BalanceUpdateRequest(amount))
+                .exchangeToMono(response -> {
+                    if (response.statusCode().is2xxSuccessful()) {
+                        return response.bodyToMono(BalanceDto.class)
+                                .doOnNext(balance -> cacheBalance(accountId, balance))
+                                .map(balance -> WithdrawalResultDto.builder()
+                                        .approved(true)
+                                        .balance(balance)
+                                        .build());
+                    }
+                    if (response.statusCode() == HttpStatus.CONFLICT
+                            || response.statusCode() == HttpStatus.UNPROCESSABLE_ENTITY) {
+                        return response.releaseBody()
+                                .thenReturn(WithdrawalResultDto.builder()
+                                        .approved(false)
+                                        .build());
+                    }
+                    return response.createException().flatMap(e -> Mono.<WithdrawalResultDto>error(e));
+                });
     }
 
     /**
@@ -79,10 +263,20 @@ public class AccountService {
      * @return Mono<String>
      */
     public Mono<String> getAccountNumber(String accountId) {
-        return webClient.get()
-                .uri("/accounts/{id}/number", accountId)
-                .retrieve()
-                .bodyToMono(String.class);
+        return hedger.execute(() -> webClient.get()
+                        .uri("/accounts/{id}/number", accountId)
+                        .retrieve()
+                        .bodyToMono(String.class));
+    }
+
+    @Data
+    @Builder
+    public static class OwnershipVerificationRequest {
+        private List<String> accountIds;
+
+        public OwnershipVerificationRequest(List<String> accountIds) {
+            this.accountIds = accountIds;
+        }
     }
 
     @Data
@@ -1,45 +1,128 @@
 package com.nttdata.bankapp.msdebitcardservice.client;
 
+import com.nttdata.bankapp.msdebitcardservice.config.DownstreamWebClientFactory;
+import com.nttdata.bankapp.msdebitcardservice.exception.ConcurrencyLimitExceededException;
+import com.nttdata.bankapp.msdebitcardservice.support.RequestHedger;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.Builder;
 import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+
 /**
  * Cliente para el servicio de clientes.
  */
 @Component
 public class CustomerService {
     private final WebClient webClient;
+    private final RequestHedger hedger;
+    private final Cache<String, Boolean> existenceCache;
+    private final Cache<String, Boolean> overdueDebtsCache;
 
-    public CustomerService(WebClient.Builder webClientBuilder) {
-        this.webClient = webClientBuilder.baseUrl("http://ms-customer-service").build();
+    public CustomerService(DownstreamWebClientFactory webClientFactory,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.cache.customer.maximum-size:10000}") long maximumSize,
+                           @Value("${app.cache.customer.exists-ttl:1h}") Duration existsTtl,
+                           @Value("${app.cache.customer.not-found-ttl:1m}") Duration notFoundTtl,
+                           @Value("${app.cache.customer.overdue-debts-ttl:10s}") Duration overdueDebtsTtl) {
+        this.webClient = webClientFactory.create("customer", "http://ms-customer-service");
+        this.hedger = webClientFactory.createHedger("customer");
+        this.existenceCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new ExistenceExpiry(existsTtl, notFoundTtl))
+                .recordStats()
+                .build();
+        this.overdueDebtsCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(overdueDebtsTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, existenceCache, "customerExists");
+        CaffeineCacheMetrics.monitor(meterRegistry, overdueDebtsCache, "customerOverdueDebts");
     }
 
     /**
-     * Verifica si un cliente existe.
+     * Verifica si un cliente existe. Las respuestas positivas y negativas se cachean;
+     * los errores no.
      * @param customerId ID del cliente
      * @return Mono<Boolean>
      */
     public Mono<Boolean> customerExists(String customerId) {
-        return webClient.get()
-                .uri("/customers/{id}/exists", customerId)
-                .retrieve()
-                .bodyToMono(Boolean.class)
-                .onErrorReturn(false);
+        Boolean cached = existenceCache.getIfPresent(customerId);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return hedger.execute(() -> webClient.get()
+                        .uri("/customers/{id}/exists", customerId)
+                        .retrieve()
+                        .bodyToMono(Boolean.class))
+                .doOnNext(exists -> existenceCache.put(customerId, exists))
+                // Un rechazo por límite de concurrencia no significa que el cliente no exista
+                .onErrorReturn(e -> !(e instanceof ConcurrencyLimitExceededException), false);
     }
 
     /**
-     * Verifica si un cliente tiene deudas vencidas.
+     * Verifica si un cliente tiene deudas vencidas. El resultado se cachea por poco tiempo, porque
+     * las deudas cambian en otro servicio; ese servicio puede además descartarlo con evictOverdueDebts
+     * al registrar un pago, para que el cliente no siga bloqueado hasta que venza la entrada.
      * @param customerId ID del cliente
      * @return Mono<Boolean>
      */
     public Mono<Boolean> hasOverdueDebts(String customerId) {
+        Boolean cached = overdueDebtsCache.getIfPresent(customerId);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
         return webClient.get()
                 .uri("/customers/{id}/has-overdue-debts", customerId)
                 .retrieve()
                 .bodyToMono(Boolean.class)
-                .onErrorReturn(false);
+                .doOnNext(hasDebts -> overdueDebtsCache.put(customerId, hasDebts))
+                .onErrorReturn(e -> !(e instanceof ConcurrencyLimitExceededException), false);
+    }
+
+    /**
+     * Descarta el estado de deudas vencidas cacheado de un cliente.
+     * @param customerId ID del cliente
+     */
+    public void evictOverdueDebts(String customerId) {
+        overdueDebtsCache.invalidate(customerId);
+    }
+
+    /**
+     * Expiración por entrada: los clientes existentes se cachean por más tiempo
+     * que los no encontrados.
+     */
+    private static class ExistenceExpiry implements Expiry<String, Boolean> {
+        private final long existsTtlNanos;
+        private final long notFoundTtlNanos;
+
+        ExistenceExpiry(Duration existsTtl, Duration notFoundTtl) {
+            this.existsTtlNanos = existsTtl.toNanos();
+            this.notFoundTtlNanos = notFoundTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(String customerId, Boolean exists, long currentTime) {
+            return exists ? existsTtlNanos : notFoundTtlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String customerId, Boolean exists, long currentTime, long currentDuration) {
+            return expireAfterCreate(customerId, exists, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String customerId, Boolean exists, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 }
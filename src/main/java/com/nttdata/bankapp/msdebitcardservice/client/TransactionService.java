@@ -1,5 +1,6 @@
 package com.nttdata.bankapp.msdebitcardservice.client;
 
+import com.nttdata.bankapp.msdebitcardservice.config.DownstreamWebClientFactory;
 import com.nttdata.bankapp.msdebitcardservice.dto.TransactionDto;
 import lombok.Builder;
 import lombok.Data;
@@ -9,6 +10,7 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 /**
  * Cliente para el servicio de transacciones.
@@ -17,8 +19,8 @@ import java.math.BigDecimal;
 public class TransactionService {
     private final WebClient webClient;
 
-    public TransactionService(WebClient.Builder webClientBuilder) {
-        this.webClient = webClientBuilder.baseUrl("http://ms-transaction-service").build();
+    public TransactionService(DownstreamWebClientFactory webClientFactory) {
+        this.webClient = webClientFactory.create("transaction", "http://ms-transaction-service");
     }
 
     /**
@@ -34,6 +36,20 @@ public class TransactionService {
                 .bodyToMono(TransactionDto.class);
     }
 
+    /**
+     * Crea en una sola solicitud un lote de transacciones con tarjeta de débito.
+     * @param requests Datos de las transacciones
+     * @return Mono con las transacciones creadas, en el mismo orden que las solicitudes
+     */
+    public Mono<List<TransactionDto>> createDebitCardTransactions(List<DebitCardTransactionRequest> requests) {
+        return webClient.post()
+                .uri("/transactions/debit-card/batch")
+                .bodyValue(requests)
+                .retrieve()
+                .bodyToFlux(TransactionDto.class)
+                .collectList();
+    }
+
     /**
      * Obtiene las transacciones de una tarjeta de débito.
      * @param debitCardId ID de la tarjeta
@@ -58,5 +74,6 @@ public class TransactionService {
         private BigDecimal amount;
         private String description;
         private String customerId;
+        private String reference; // ID de la entrada del outbox, para que el servicio descarte reenvíos
     }
 }
\ No newline at end of file
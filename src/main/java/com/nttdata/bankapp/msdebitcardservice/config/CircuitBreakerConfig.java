@@ -1,5 +1,7 @@
 package com.nttdata.bankapp.msdebitcardservice.config;
 
+import com.nttdata.bankapp.msdebitcardservice.exception.ConcurrencyLimitExceededException;
+import com.nttdata.bankapp.msdebitcardservice.exception.IdempotencyConflictException;
 import io.github.resilience4j.timelimiter.TimeLimiterConfig;
 import org.springframework.cloud.circuitbreaker.resilience4j.ReactiveResilience4JCircuitBreakerFactory;
 import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4JConfigBuilder;
@@ -23,6 +25,8 @@ public class CircuitBreakerConfig {
                         .failureRateThreshold(50)
                         .waitDurationInOpenState(Duration.ofSeconds(10))
                         .permittedNumberOfCallsInHalfOpenState(5)
+                        // Los rechazos del límite de concurrencia y los conflictos de idempotencia no son fallas del servicio
+                        .ignoreExceptions(ConcurrencyLimitExceededException.class, IdempotencyConflictException.class)
                         .build())
                 .timeLimiterConfig(TimeLimiterConfig.custom()
                         .timeoutDuration(Duration.ofSeconds(2))
@@ -0,0 +1,37 @@
+package com.nttdata.bankapp.msdebitcardservice.config;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cuenta las transiciones de estado de los circuit breakers, incluidos los que se crean
+ * después del arranque. El estado actual ya lo publica resilience4j como resilience4j.circuitbreaker.state.
+ */
+@Component
+@Slf4j
+public class CircuitBreakerMetrics {
+    private final MeterRegistry meterRegistry;
+
+    public CircuitBreakerMetrics(CircuitBreakerRegistry circuitBreakerRegistry, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        circuitBreakerRegistry.getAllCircuitBreakers().forEach(this::monitor);
+        circuitBreakerRegistry.getEventPublisher().onEntryAdded(event -> monitor(event.getAddedEntry()));
+    }
+
+    private void monitor(CircuitBreaker circuitBreaker) {
+        circuitBreaker.getEventPublisher().onStateTransition(event -> {
+            log.warn("Circuit breaker {} changed state: {}", event.getCircuitBreakerName(), event.getStateTransition());
+            Counter.builder("debitcard.circuitbreaker.transitions")
+                    .description("Transiciones de estado de los circuit breakers")
+                    .tag("name", event.getCircuitBreakerName())
+                    .tag("from", event.getStateTransition().getFromState().name())
+                    .tag("to", event.getStateTransition().getToState().name())
+                    .register(meterRegistry)
+                    .increment();
+        });
+    }
+}
@@ -0,0 +1,178 @@
+package com.nttdata.bankapp.msdebitcardservice.config;
+
+import com.nttdata.bankapp.msdebitcardservice.support.AdaptiveConcurrencyLimiter;
+import com.nttdata.bankapp.msdebitcardservice.support.InstanceLatencyRegistry;
+import com.nttdata.bankapp.msdebitcardservice.support.RequestHedger;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Crea un WebClient balanceado por cada servicio remoto, con su propio pool de conexiones,
+ * para que un servicio degradado no agote las conexiones de los demás.
+ * Cada valor se lee de app.http-clients.&lt;cliente&gt;.* y, si no está, de app.http-clients.defaults.*.
+ * Las métricas de cada pool se publican como reactor.netty.connection.provider.* con el nombre del cliente.
+ * Cada cliente tiene además un límite de concurrencia adaptativo que rechaza de inmediato
+ * las llamadas excedentes cuando el servicio se vuelve lento.
+ */
+@Component
+@Slf4j
+public class DownstreamWebClientFactory {
+    private static final String PREFIX = "app.http-clients.";
+    private static final String URI_TEMPLATE_ATTRIBUTE = WebClient.class.getName() + ".uriTemplate";
+
+    private final WebClient.Builder webClientBuilder;
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final InstanceLatencyRegistry instanceLatencyRegistry;
+    private final List<ConnectionProvider> connectionProviders = new CopyOnWriteArrayList<>();
+
+    public DownstreamWebClientFactory(WebClient.Builder webClientBuilder, Environment environment,
+                                      MeterRegistry meterRegistry,
+                                      InstanceLatencyRegistry instanceLatencyRegistry) {
+        this.webClientBuilder = webClientBuilder;
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+        this.instanceLatencyRegistry = instanceLatencyRegistry;
+    }
+
+    /**
+     * Crea el WebClient de un servicio remoto.
+     * @param clientName Nombre del cliente, usado en la configuración y en las métricas
+     * @param baseUrl URL base del servicio
+     * @return WebClient con pool de conexiones propio
+     */
+    public WebClient create(String clientName, String baseUrl) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder(clientName)
+                .maxConnections(property(clientName, "max-connections", Integer.class, 100))
+                .pendingAcquireMaxCount(property(clientName, "pending-acquire-max-count", Integer.class, 500))
+                .pendingAcquireTimeout(property(clientName, "pending-acquire-timeout", Duration.class, Duration.ofSeconds(5)))
+                .maxIdleTime(property(clientName, "max-idle-time", Duration.class, Duration.ofSeconds(30)))
+                .maxLifeTime(property(clientName, "max-life-time", Duration.class, Duration.ofMinutes(5)))
+                .evictInBackground(property(clientName, "evict-interval", Duration.class, Duration.ofSeconds(30)))
+                .metrics(true)
+                .build();
+        connectionProviders.add(connectionProvider);
+
+        // Sin estos límites una conexión colgada solo la corta quien consume la respuesta, si es que la corta
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS,
+                        (int) property(clientName, "connect-timeout", Duration.class, Duration.ofSeconds(2)).toMillis())
+                .responseTimeout(property(clientName, "response-timeout", Duration.class, Duration.ofSeconds(5)));
+        if (property(clientName, "http2", Boolean.class, false)) {
+            // HTTP/2 sin TLS entre servicios internos, con HTTP/1.1 para instancias que no lo soporten
+            httpClient = httpClient.protocol(HttpProtocol.H2C, HttpProtocol.HTTP11);
+        }
+
+        log.info("Created connection pool for client {} with max {} connections",
+                clientName, property(clientName, "max-connections", Integer.class, 100));
+        // clone() conserva el filtro de balanceo de carga del builder compartido
+        WebClient.Builder builder = webClientBuilder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .baseUrl(baseUrl)
+                // Antes del límite de concurrencia, para medir también los rechazos
+                .filter((request, next) -> recordClientMetrics(clientName, request, next));
+        if (property(clientName, "concurrency-limit.enabled", Boolean.class, true)) {
+            AdaptiveConcurrencyLimiter limiter = concurrencyLimiter(clientName);
+            builder.filter((request, next) -> limiter.execute(() -> next.exchange(request),
+                    response -> response.statusCode().is5xxServerError()));
+        }
+        // Se agrega después del filtro de balanceo, así que ve la URL ya resuelta a host:puerto
+        builder.filter(this::recordInstanceLatency);
+        return builder.build();
+    }
+
+    private Mono<ClientResponse> recordClientMetrics(String clientName, ClientRequest request, ExchangeFunction next) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String[] status = {"CLIENT_ERROR"};
+            return next.exchange(request)
+                    .doOnNext(response -> status[0] = String.valueOf(response.rawStatusCode()))
+                    .doOnError(e -> status[0] = e.getClass().getSimpleName())
+                    .doFinally(signal -> sample.stop(Timer.builder("debitcard.client.requests")
+                            .description("Duración de las llamadas a servicios remotos")
+                            .tag("client", clientName)
+                            .tag("method", request.method().name())
+                            .tag("uri", request.attribute(URI_TEMPLATE_ATTRIBUTE).map(String::valueOf).orElse("none"))
+                            .tag("status", signal == SignalType.CANCEL ? "CANCELLED" : status[0])
+                            .publishPercentileHistogram()
+                            .register(meterRegistry)));
+        });
+    }
+
+    private Mono<ClientResponse> recordInstanceLatency(ClientRequest request, ExchangeFunction next) {
+        return Mono.defer(() -> {
+            int port = request.url().getPort() != -1 ? request.url().getPort()
+                    : "https".equals(request.url().getScheme()) ? 443 : 80;
+            String instance = request.url().getHost() + ":" + port;
+            long startedAt = System.nanoTime();
+            boolean[] failed = new boolean[1];
+            instanceLatencyRegistry.onStart(instance);
+            return next.exchange(request)
+                    .doOnNext(response -> failed[0] = response.statusCode().is5xxServerError())
+                    .doFinally(signal -> {
+                        if (signal == SignalType.CANCEL) {
+                            instanceLatencyRegistry.onCancel(instance);
+                        } else {
+                            instanceLatencyRegistry.onComplete(instance, System.nanoTime() - startedAt,
+                                    failed[0] || signal == SignalType.ON_ERROR);
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Crea el hedger de lecturas idempotentes de un servicio remoto, configurado en
+     * app.http-clients.&lt;cliente&gt;.hedging.*. Deshabilitado por defecto.
+     * @param clientName Nombre del cliente
+     * @return RequestHedger del cliente
+     */
+    public RequestHedger createHedger(String clientName) {
+        return new RequestHedger(clientName, meterRegistry,
+                property(clientName, "hedging.enabled", Boolean.class, false),
+                property(clientName, "hedging.percentile", Double.class, 0.95),
+                property(clientName, "hedging.min-delay", Duration.class, Duration.ofMillis(10)),
+                property(clientName, "hedging.max-delay", Duration.class, Duration.ofMillis(500)),
+                property(clientName, "hedging.budget-ratio", Double.class, 0.05),
+                property(clientName, "hedging.max-tokens", Double.class, 10.0),
+                property(clientName, "hedging.window-size", Integer.class, 1000));
+    }
+
+    private AdaptiveConcurrencyLimiter concurrencyLimiter(String clientName) {
+        return new AdaptiveConcurrencyLimiter(clientName, meterRegistry,
+                property(clientName, "concurrency-limit.initial", Integer.class, 20),
+                property(clientName, "concurrency-limit.min", Integer.class, 4),
+                property(clientName, "concurrency-limit.max", Integer.class, 200),
+                property(clientName, "concurrency-limit.latency-tolerance", Double.class, 2.0),
+                property(clientName, "concurrency-limit.backoff-ratio", Double.class, 0.9),
+                property(clientName, "concurrency-limit.min-rtt-reset-samples", Integer.class, 1000));
+    }
+
+    @PreDestroy
+    public void dispose() {
+        connectionProviders.forEach(ConnectionProvider::dispose);
+    }
+
+    private <T> T property(String clientName, String key, Class<T> type, T defaultValue) {
+        T value = environment.getProperty(PREFIX + clientName + "." + key, type);
+        return value != null ? value : environment.getProperty(PREFIX + "defaults." + key, type, defaultValue);
+    }
+}
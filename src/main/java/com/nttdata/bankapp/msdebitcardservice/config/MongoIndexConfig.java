@@ -0,0 +1,68 @@
+package com.nttdata.bankapp.msdebitcardservice.config;
+
+import com.nttdata.bankapp.msdebitcardservice.model.DebitCard;
+import com.nttdata.bankapp.msdebitcardservice.model.IdempotencyRecord;
+import com.nttdata.bankapp.msdebitcardservice.model.TransactionOutboxEntry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Configuración para la creación de índices de Mongo al iniciar la aplicación.
+ * Los índices declarados en las entidades (@Indexed, @CompoundIndex) se crean aquí,
+ * ya que la creación automática de índices está deshabilitada por defecto.
+ */
+@Configuration
+@RequiredArgsConstructor
+@Slf4j
+public class MongoIndexConfig {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final MongoMappingContext mongoMappingContext;
+
+    @Value("${app.idempotency.ttl:24h}")
+    private Duration idempotencyTtl;
+
+    @Value("${app.payment.outbox.retention:7d}")
+    private Duration outboxRetention;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        MongoPersistentEntityIndexResolver indexResolver = new MongoPersistentEntityIndexResolver(mongoMappingContext);
+
+        Flux<String> debitCardIndexes = Flux.fromIterable(indexResolver.resolveIndexFor(DebitCard.class))
+                .concatMap(index -> ensureIndex(DebitCard.class, index));
+
+        Flux<String> idempotencyIndexes = ensureIndex(IdempotencyRecord.class,
+                new Index().on("createdAt", Sort.Direction.ASC).expire(idempotencyTtl)).flux();
+
+        Flux<String> outboxIndexes = Flux.concat(
+                Flux.fromIterable(indexResolver.resolveIndexFor(TransactionOutboxEntry.class))
+                        .concatMap(index -> ensureIndex(TransactionOutboxEntry.class, index)),
+                // Solo las entradas publicadas tienen publishedAt, así que las pendientes nunca expiran
+                ensureIndex(TransactionOutboxEntry.class,
+                        new Index().on("publishedAt", Sort.Direction.ASC).expire(outboxRetention)));
+
+        Flux.concat(debitCardIndexes, idempotencyIndexes, outboxIndexes)
+                .subscribe(
+                        index -> log.info("Ensured Mongo index: {}", index),
+                        e -> log.error("Error creating Mongo indexes: {}", e.getMessage()));
+    }
+
+    private Mono<String> ensureIndex(Class<?> entityClass, IndexDefinition index) {
+        return reactiveMongoTemplate.indexOps(entityClass).ensureIndex(index);
+    }
+}
@@ -0,0 +1,18 @@
+package com.nttdata.bankapp.msdebitcardservice.config;
+
+import com.nttdata.bankapp.msdebitcardservice.support.KeyedSequencer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuración para el ordenamiento de pagos por tarjeta.
+ */
+@Configuration
+public class PaymentSequencerConfig {
+
+    @Bean
+    public KeyedSequencer paymentSequencer(MeterRegistry meterRegistry) {
+        return new KeyedSequencer("payments", meterRegistry);
+    }
+}
@@ -0,0 +1,63 @@
+package com.nttdata.bankapp.msdebitcardservice.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Mide la duración de cada método público del servicio de tarjetas de débito hasta que
+ * su Mono o Flux termina, no solo hasta que se arma. Publica el timer debitcard.service.duration
+ * con histograma de percentiles, etiquetado por método, resultado y excepción.
+ */
+@Aspect
+@Component
+public class ServiceMetricsAspect {
+    private final MeterRegistry meterRegistry;
+
+    public ServiceMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * com.nttdata.bankapp.msdebitcardservice.service.DebitCardService+.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        String method = joinPoint.getSignature().getName();
+        Object result = joinPoint.proceed();
+        if (result instanceof Mono) {
+            return Mono.defer(() -> {
+                Timer.Sample sample = Timer.start(meterRegistry);
+                String[] exception = {"none"};
+                return ((Mono<?>) result)
+                        .doOnError(e -> exception[0] = e.getClass().getSimpleName())
+                        .doFinally(signal -> stop(sample, method, signal, exception[0]));
+            });
+        }
+        if (result instanceof Flux) {
+            return Flux.defer(() -> {
+                Timer.Sample sample = Timer.start(meterRegistry);
+                String[] exception = {"none"};
+                return ((Flux<?>) result)
+                        .doOnError(e -> exception[0] = e.getClass().getSimpleName())
+                        .doFinally(signal -> stop(sample, method, signal, exception[0]));
+            });
+        }
+        return result;
+    }
+
+    private void stop(Timer.Sample sample, String method, SignalType signal, String exception) {
+        String outcome = signal == SignalType.ON_COMPLETE ? "success"
+                : signal == SignalType.CANCEL ? "cancelled" : "error";
+        sample.stop(Timer.builder("debitcard.service.duration")
+                .description("Duración de los métodos del servicio de tarjetas de débito")
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .tag("exception", exception)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+}
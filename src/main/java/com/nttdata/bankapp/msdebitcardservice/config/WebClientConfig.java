@@ -1,13 +1,20 @@
 package com.nttdata.bankapp.msdebitcardservice.config;
+import com.nttdata.bankapp.msdebitcardservice.support.InstanceLatencyRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import java.time.Duration;
+
 /**
  * Configuración para WebClient.
+ * Todos los servicios remotos usan el balanceador peak-EWMA con estadísticas compartidas.
  */
 @Configuration
+@LoadBalancerClients(defaultConfiguration = PeakEwmaLoadBalancerConfiguration.class)
 public class WebClientConfig {
 
     @Bean
@@ -15,4 +22,11 @@ public class WebClientConfig {
     public WebClient.Builder webClientBuilder() {
         return WebClient.builder();
     }
+
+    @Bean
+    public InstanceLatencyRegistry instanceLatencyRegistry(
+            @Value("${app.load-balancer.decay-time:10s}") Duration decayTime,
+            @Value("${app.load-balancer.error-penalty:1s}") Duration errorPenalty) {
+        return new InstanceLatencyRegistry(decayTime, errorPenalty);
+    }
 }
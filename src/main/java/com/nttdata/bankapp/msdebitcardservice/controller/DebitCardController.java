@@ -5,6 +5,7 @@ import com.nttdata.bankapp.msdebitcardservice.service.DebitCardService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
@@ -24,15 +25,43 @@ public class DebitCardController {
     private final DebitCardService debitCardService;
 
     /**
-     * Obtiene todas las tarjetas de débito.
+     * Obtiene las primeras tarjetas de débito ordenadas por ID, hasta app.pagination.max-size,
+     * sin cvv ni cuentas asociadas.
      * @return Flux de DebitCardDto
+     * @deprecated Ya no devuelve todas las tarjetas: usar GET /debit-cards/page para recorrerlas
+     * o pedir application/x-ndjson para transmitirlas completas.
      */
+    @Deprecated
     @GetMapping
     public Flux<DebitCardDto> getAll() {
         log.info("GET /debit-cards");
         return debitCardService.findAll();
     }
 
+    /**
+     * Transmite todas las tarjetas de débito como NDJSON, respetando la contrapresión del cliente.
+     * @return Flux de DebitCardDto
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<DebitCardDto> streamAll() {
+        log.info("GET /debit-cards (stream)");
+        return debitCardService.streamAll();
+    }
+
+    /**
+     * Obtiene una página de tarjetas de débito ordenadas por ID.
+     * @param after ID de la última tarjeta de la página anterior (opcional)
+     * @param size Tamaño de la página (opcional)
+     * @return Mono de DebitCardPageDto
+     */
+    @GetMapping("/page")
+    public Mono<DebitCardPageDto> getPage(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer size) {
+        log.info("GET /debit-cards/page after: {} size: {}", after, size);
+        return debitCardService.findPage(after, size);
+    }
+
     /**
      * Obtiene una tarjeta de débito por su ID.
      * @param id ID de la tarjeta de débito
@@ -110,6 +139,19 @@ public class DebitCardController {
         return debitCardService.delete(id);
     }
 
+    /**
+     * Descarta el estado de deudas vencidas cacheado de un cliente. Lo invoca el servicio de clientes
+     * cuando el cliente paga una deuda, para que pueda volver a operar sin esperar a que expire la caché.
+     * @param customerId ID del cliente
+     * @return Mono<Void>
+     */
+    @DeleteMapping("/customers/{customerId}/overdue-debts")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public Mono<Void> evictCustomerOverdueDebts(@PathVariable String customerId) {
+        log.info("DELETE /debit-cards/customers/{}/overdue-debts", customerId);
+        return debitCardService.evictCustomerOverdueDebts(customerId);
+    }
+
     /**
      * Asocia cuentas a una tarjeta de débito.
      * @param request DTO con los datos de la asociación
@@ -123,13 +165,32 @@ public class DebitCardController {
 
     /**
      * Procesa un pago con tarjeta de débito.
+     * Si app.payment.outbox.enabled está activo, la transacción se registra en segundo plano:
+     * la respuesta trae id nulo y reference con el ID de la entrada del outbox.
+     * @param idempotencyKey Clave opcional para que los reintentos no debiten dos veces
      * @param request DTO con los datos de la operación
      * @return Mono de TransactionDto
      */
     @PostMapping("/process-payment")
-    public Mono<TransactionDto> processPayment(@Valid @RequestBody DebitCardOperationRequest request) {
+    public Mono<TransactionDto> processPayment(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @Valid @RequestBody DebitCardOperationRequest request) {
         log.info("POST /debit-cards/process-payment");
-        return debitCardService.processPayment(request);
+        return debitCardService.processPayment(request, idempotencyKey);
+    }
+
+    /**
+     * Procesa un lote de pagos recibido como NDJSON, devolviendo el resultado de cada pago
+     * a medida que termina.
+     * @param requests Flux de DTOs con los datos de cada operación
+     * @return Flux de PaymentResultDto
+     */
+    @PostMapping(value = "/process-payment/bulk",
+            consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<PaymentResultDto> processPayments(@RequestBody Flux<DebitCardOperationRequest> requests) {
+        log.info("POST /debit-cards/process-payment/bulk");
+        return debitCardService.processPayments(requests);
     }
 
     /**
@@ -146,6 +207,22 @@ public class DebitCardController {
         return debitCardService.getLastMovements(id, limit);
     }
 
+    /**
+     * Transmite los últimos movimientos de una tarjeta de débito como NDJSON o SSE,
+     * emitiendo cada movimiento en cuanto está listo.
+     * @param id ID de la tarjeta
+     * @param limit Número de movimientos a obtener (por defecto 10)
+     * @return Flux de MovementDto
+     */
+    @GetMapping(value = "/{id}/movements/stream",
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<MovementDto> streamLastMovements(
+            @PathVariable String id,
+            @RequestParam(required = false, defaultValue = "10") Integer limit) {
+        log.info("GET /debit-cards/{}/movements/stream with limit: {}", id, limit);
+        return debitCardService.streamLastMovements(id, limit);
+    }
+
     /**
      * Consulta el saldo de la cuenta principal de una tarjeta de débito.
      * @param id ID de la tarjeta
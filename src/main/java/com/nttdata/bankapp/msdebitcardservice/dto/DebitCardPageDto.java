@@ -0,0 +1,21 @@
+package com.nttdata.bankapp.msdebitcardservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO para una página de tarjetas de débito paginada por cursor.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DebitCardPageDto {
+    private List<DebitCardDto> content;
+    private int size;
+    private String nextCursor; // ID a enviar como "after" para la siguiente página; null si no hay más
+}
@@ -17,6 +17,7 @@ import java.time.LocalDateTime;
 @Builder
 public class MovementDto {
     private String transactionId;
+    private String reference; // ID de la entrada del outbox si la transacción aún no tiene ID
     private String transactionType;
     private LocalDateTime transactionDate;
     private String description;
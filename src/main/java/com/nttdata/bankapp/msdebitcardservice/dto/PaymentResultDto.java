@@ -0,0 +1,21 @@
+package com.nttdata.bankapp.msdebitcardservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO para el resultado de un pago dentro de un lote.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentResultDto {
+    private long index; // Posición de la solicitud en el lote, empezando en 0
+    private String debitCardId;
+    private boolean success;
+    private TransactionDto transaction; // Solo si el pago fue exitoso
+    private String error; // Solo si el pago falló
+}
@@ -16,7 +16,7 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Builder
 public class TransactionDto {
-    private String id;
+    private String id; // Nulo mientras la transacción espera en el outbox
     private String accountId;
     private String debitCardId;
     private String customerId;
@@ -24,5 +24,6 @@ public class TransactionDto {
     private String description;
     private LocalDateTime transactionDate;
     private TransactionType type;
+    private String reference; // ID de la entrada del outbox mientras la transacción no se publica
 
 }
\ No newline at end of file
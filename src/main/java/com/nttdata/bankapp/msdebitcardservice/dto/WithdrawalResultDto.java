@@ -0,0 +1,18 @@
+package com.nttdata.bankapp.msdebitcardservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO para el resultado de un retiro condicional.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class WithdrawalResultDto {
+    private boolean approved; // false si la cuenta no tenía fondos suficientes
+    private BalanceDto balance; // Saldo resultante, solo si el retiro fue aprobado
+}
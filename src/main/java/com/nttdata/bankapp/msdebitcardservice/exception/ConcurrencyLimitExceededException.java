@@ -0,0 +1,10 @@
+package com.nttdata.bankapp.msdebitcardservice.exception;
+
+/**
+ * Excepción para llamadas rechazadas por el límite de concurrencia de un servicio remoto.
+ */
+public class ConcurrencyLimitExceededException extends RuntimeException {
+    public ConcurrencyLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -49,6 +49,10 @@ public class GlobalExceptionHandler extends AbstractErrorWebExceptionHandler {
             status = HttpStatus.BAD_REQUEST;
         } else if (error instanceof InsufficientFundsException) {
             status = HttpStatus.PAYMENT_REQUIRED;
+        } else if (error instanceof IdempotencyConflictException) {
+            status = HttpStatus.CONFLICT;
+        } else if (error instanceof ConcurrencyLimitExceededException) {
+            status = HttpStatus.SERVICE_UNAVAILABLE;
         } else {
             status = HttpStatus.INTERNAL_SERVER_ERROR;
         }
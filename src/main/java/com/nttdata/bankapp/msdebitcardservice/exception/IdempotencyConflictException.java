@@ -0,0 +1,10 @@
+package com.nttdata.bankapp.msdebitcardservice.exception;
+
+/**
+ * Excepción para solicitudes cuya clave de idempotencia tiene otro intento en curso.
+ */
+public class IdempotencyConflictException extends RuntimeException {
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+}
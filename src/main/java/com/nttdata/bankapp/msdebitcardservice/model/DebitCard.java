@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -21,6 +23,7 @@ import java.util.List;
 @AllArgsConstructor
 @Builder
 @Document(collection = "debitCards")
+@CompoundIndex(name = "customer_active_expiration", def = "{'customerId': 1, 'active': 1, 'expirationDate': 1}")
 public class DebitCard {
     @Id
     private String id;
@@ -33,6 +36,10 @@ public class DebitCard {
     private LocalDate expirationDate;
     private String cvv;
     private Boolean active;
-    private LocalDateTime createdAt;
+    @Indexed
+    private LocalDateTime createdAt; // Usado por la sincronización incremental del registro de números
     private LocalDateTime updatedAt;
+
+    @Version
+    private Long version;
 }
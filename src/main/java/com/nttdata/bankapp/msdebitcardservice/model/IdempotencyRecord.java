@@ -0,0 +1,28 @@
+package com.nttdata.bankapp.msdebitcardservice.model;
+
+import com.nttdata.bankapp.msdebitcardservice.dto.TransactionDto;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Modelo para almacenar el resultado de un pago asociado a una clave de idempotencia.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "idempotencyKeys")
+public class IdempotencyRecord {
+    @Id
+    private String key; // Valor del header Idempotency-Key
+    private String requestFingerprint; // Huella de la solicitud original
+    private IdempotencyStatus status; // PENDING mientras el pago está en curso
+    private TransactionDto transaction;
+    private LocalDateTime createdAt; // Campo con índice TTL
+}
@@ -0,0 +1,8 @@
+package com.nttdata.bankapp.msdebitcardservice.model;
+
+/**
+ * Estados de una clave de idempotencia.
+ */
+public enum IdempotencyStatus {
+    PENDING, COMPLETED
+}
@@ -0,0 +1,8 @@
+package com.nttdata.bankapp.msdebitcardservice.model;
+
+/**
+ * Estados de una entrada del outbox de transacciones.
+ */
+public enum OutboxStatus {
+    PENDING, PUBLISHING, PUBLISHED, FAILED
+}
@@ -0,0 +1,25 @@
+package com.nttdata.bankapp.msdebitcardservice.model;
+
+import com.nttdata.bankapp.msdebitcardservice.dto.TransactionDto;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Modelo de un movimiento reciente de tarjeta, guardado en una colección capped
+ * que conserva solo los últimos documentos insertados.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "recentMovements")
+public class RecentMovement {
+    @Id
+    private String id; // ObjectId creciente, usado para reanudar la lectura de la colección
+    private String debitCardId;
+    private TransactionDto transaction;
+}
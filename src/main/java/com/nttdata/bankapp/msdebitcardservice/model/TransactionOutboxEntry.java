@@ -0,0 +1,41 @@
+package com.nttdata.bankapp.msdebitcardservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Modelo de una transacción de pago pendiente de registrar en el servicio de transacciones.
+ * Se guarda al aprobar el débito y un publicador en segundo plano la envía con reintentos.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "transactionOutbox")
+@CompoundIndex(name = "status_next_attempt", def = "{'status': 1, 'nextAttemptAt': 1}")
+public class TransactionOutboxEntry {
+    @Id
+    private String id; // También es el ID local de la transacción devuelto al cliente
+    private String debitCardId;
+    private String accountId;
+    private String customerId;
+    private BigDecimal amount;
+    private String description;
+    private OutboxStatus status;
+    private int attempts;
+    private LocalDateTime nextAttemptAt;
+    private String claimToken; // Identifica el lote que tomó la entrada
+    private LocalDateTime leaseUntil; // Tras este instante otra pasada puede retomar la entrada
+    private String transactionId; // ID asignado por el servicio de transacciones
+    private String lastError;
+    private LocalDateTime createdAt;
+    private LocalDateTime publishedAt; // Campo con índice TTL
+}
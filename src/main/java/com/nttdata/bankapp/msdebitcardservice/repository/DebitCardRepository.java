@@ -1,14 +1,37 @@
 package com.nttdata.bankapp.msdebitcardservice.repository;
 
 import com.nttdata.bankapp.msdebitcardservice.model.DebitCard;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
+
 /**
  * Repositorio para entidades DebitCard.
  */
-public interface DebitCardRepository extends ReactiveMongoRepository<DebitCard, String> {
+public interface DebitCardRepository extends ReactiveMongoRepository<DebitCard, String>, DebitCardRepositoryCustom {
     Flux<DebitCard> findByCustomerId(String customerId);
     Mono<DebitCard> findByCardNumber(String cardNumber);
+
+    // Proyecciones para los listados: no cargan el CVV ni las cuentas asociadas
+    String LIST_VIEW_FIELDS = "{ 'cvv': 0, 'associatedAccountIds': 0 }";
+
+    @Query(value = "{}", fields = LIST_VIEW_FIELDS)
+    Flux<DebitCard> findListViewBy(Pageable pageable);
+
+    @Query(value = "{ '_id': { '$gt': ?0 } }", fields = LIST_VIEW_FIELDS)
+    Flux<DebitCard> findListViewByIdGreaterThan(ObjectId after, Pageable pageable);
+
+    @Query(value = "{}", fields = LIST_VIEW_FIELDS)
+    Flux<DebitCard> findAllListView();
+
+    @Query(value = "{}", fields = "{ 'cardNumber': 1 }")
+    Flux<DebitCard> findAllCardNumbers();
+
+    @Query(value = "{ 'createdAt': { '$gt': ?0 } }", fields = "{ 'cardNumber': 1 }")
+    Flux<DebitCard> findCardNumbersCreatedAfter(LocalDateTime since);
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.nttdata.bankapp.msdebitcardservice.repository;
+
+import com.nttdata.bankapp.msdebitcardservice.model.DebitCard;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Operaciones atómicas de escritura sobre tarjetas de débito y seguimiento de altas.
+ */
+public interface DebitCardRepositoryCustom {
+    Mono<DebitCard> updateActive(String id, String customerId, Boolean active);
+    Mono<DebitCard> updateAccounts(String id, String customerId, String primaryAccountId, List<String> associatedAccountIds);
+    Mono<DebitCard> removeById(String id);
+    Flux<String> watchInsertedCardNumbers(Instant since);
+}
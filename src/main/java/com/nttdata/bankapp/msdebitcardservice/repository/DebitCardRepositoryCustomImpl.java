@@ -0,0 +1,98 @@
+package com.nttdata.bankapp.msdebitcardservice.repository;
+
+import com.nttdata.bankapp.msdebitcardservice.model.DebitCard;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Implementación de las operaciones atómicas de escritura sobre tarjetas de débito.
+ * Cada operación es un único findAndModify/findAndRemove que incrementa la versión del documento.
+ * También expone el change stream de altas que mantiene al día los registros en memoria.
+ */
+@RequiredArgsConstructor
+public class DebitCardRepositoryCustomImpl implements DebitCardRepositoryCustom {
+
+    private static final FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options().returnNew(true);
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    /**
+     * Actualiza el estado de una tarjeta si pertenece al cliente indicado.
+     * @param id ID de la tarjeta
+     * @param customerId ID del cliente dueño (opcional)
+     * @param active Nuevo estado (opcional)
+     * @return Mono con la tarjeta actualizada, vacío si no existe o pertenece a otro cliente
+     */
+    @Override
+    public Mono<DebitCard> updateActive(String id, String customerId, Boolean active) {
+        Update update = new Update()
+                .set("updatedAt", LocalDateTime.now())
+                .inc("version", 1);
+        if (active != null) {
+            update.set("active", active);
+        }
+        return reactiveMongoTemplate.findAndModify(ownedBy(id, customerId), update, RETURN_NEW, DebitCard.class);
+    }
+
+    /**
+     * Reemplaza la cuenta principal y las cuentas asociadas de una tarjeta si pertenece al cliente indicado.
+     * @param id ID de la tarjeta
+     * @param customerId ID del cliente dueño
+     * @param primaryAccountId ID de la nueva cuenta principal
+     * @param associatedAccountIds IDs de las cuentas asociadas, en orden de prioridad
+     * @return Mono con la tarjeta actualizada, vacío si no existe o pertenece a otro cliente
+     */
+    @Override
+    public Mono<DebitCard> updateAccounts(String id, String customerId, String primaryAccountId,
+                                          List<String> associatedAccountIds) {
+        Update update = new Update()
+                .set("primaryAccountId", primaryAccountId)
+                .set("associatedAccountIds", associatedAccountIds)
+                .set("updatedAt", LocalDateTime.now())
+                .inc("version", 1);
+        return reactiveMongoTemplate.findAndModify(ownedBy(id, customerId), update, RETURN_NEW, DebitCard.class);
+    }
+
+    /**
+     * Elimina una tarjeta.
+     * @param id ID de la tarjeta
+     * @return Mono con la tarjeta eliminada, vacío si no existía
+     */
+    @Override
+    public Mono<DebitCard> removeById(String id) {
+        return reactiveMongoTemplate.findAndRemove(ownedBy(id, null), DebitCard.class);
+    }
+
+    /**
+     * Sigue las altas de tarjetas de todas las instancias con un change stream (requiere replica set).
+     * @param since Instante desde el que se entregan las altas, aunque sea anterior a la suscripción
+     * @return Flux infinito con el número de cada tarjeta creada
+     */
+    @Override
+    public Flux<String> watchInsertedCardNumbers(Instant since) {
+        return reactiveMongoTemplate.changeStream(DebitCard.class)
+                .watchCollection(DebitCard.class)
+                .filter(Criteria.where("operationType").is("insert"))
+                .resumeAt(since)
+                .listen()
+                .mapNotNull(event -> event.getBody() != null ? event.getBody().getCardNumber() : null);
+    }
+
+    private Query ownedBy(String id, String customerId) {
+        Query query = Query.query(Criteria.where("id").is(id));
+        if (customerId != null) {
+            query.addCriteria(Criteria.where("customerId").is(customerId));
+        }
+        return query;
+    }
+}
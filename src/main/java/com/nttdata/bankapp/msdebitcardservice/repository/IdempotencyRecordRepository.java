@@ -0,0 +1,10 @@
+package com.nttdata.bankapp.msdebitcardservice.repository;
+
+import com.nttdata.bankapp.msdebitcardservice.model.IdempotencyRecord;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+/**
+ * Repositorio para entidades IdempotencyRecord.
+ */
+public interface IdempotencyRecordRepository extends ReactiveMongoRepository<IdempotencyRecord, String> {
+}
@@ -0,0 +1,11 @@
+package com.nttdata.bankapp.msdebitcardservice.repository;
+
+import com.nttdata.bankapp.msdebitcardservice.model.TransactionOutboxEntry;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+/**
+ * Repositorio para entidades TransactionOutboxEntry.
+ */
+public interface TransactionOutboxRepository extends ReactiveMongoRepository<TransactionOutboxEntry, String>,
+        TransactionOutboxRepositoryCustom {
+}
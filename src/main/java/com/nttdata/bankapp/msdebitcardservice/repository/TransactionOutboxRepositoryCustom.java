@@ -0,0 +1,18 @@
+package com.nttdata.bankapp.msdebitcardservice.repository;
+
+import com.nttdata.bankapp.msdebitcardservice.model.TransactionOutboxEntry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Operaciones atómicas sobre el outbox de transacciones.
+ */
+public interface TransactionOutboxRepositoryCustom {
+    Flux<TransactionOutboxEntry> claimBatch(int batchSize, Duration lease);
+    Mono<Void> markPublished(String id, String claimToken, String transactionId);
+    Mono<Void> reschedule(String id, String claimToken, LocalDateTime nextAttemptAt, String error);
+    Mono<Void> markFailed(String id, String claimToken, String error);
+}
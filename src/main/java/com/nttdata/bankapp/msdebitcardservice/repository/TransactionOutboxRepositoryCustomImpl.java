@@ -0,0 +1,107 @@
+package com.nttdata.bankapp.msdebitcardservice.repository;
+
+import com.nttdata.bankapp.msdebitcardservice.model.OutboxStatus;
+import com.nttdata.bankapp.msdebitcardservice.model.TransactionOutboxEntry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Implementación de las operaciones atómicas sobre el outbox de transacciones.
+ * Las entradas se toman por lotes marcándolas con un token propio, de modo que dos
+ * instancias nunca publiquen la misma entrada a la vez.
+ */
+@RequiredArgsConstructor
+public class TransactionOutboxRepositoryCustomImpl implements TransactionOutboxRepositoryCustom {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    /**
+     * Toma hasta batchSize entradas listas para publicar: pendientes cuyo próximo intento ya venció
+     * o en publicación con la concesión expirada.
+     * @param batchSize Tamaño máximo del lote
+     * @param lease Duración de la concesión sobre las entradas tomadas
+     * @return Flux con las entradas tomadas por esta llamada
+     */
+    @Override
+    public Flux<TransactionOutboxEntry> claimBatch(int batchSize, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        String claimToken = UUID.randomUUID().toString();
+        Query candidates = Query.query(claimable(now)).limit(batchSize);
+        candidates.fields().include("id");
+
+        return reactiveMongoTemplate.find(candidates, TransactionOutboxEntry.class)
+                .map(TransactionOutboxEntry::getId)
+                .collect(Collectors.toList())
+                .filter(ids -> !ids.isEmpty())
+                // Se repite el criterio para no tomar entradas que otra instancia tomó entre ambas consultas
+                .flatMap(ids -> reactiveMongoTemplate.updateMulti(
+                        Query.query(new Criteria().andOperator(Criteria.where("id").in(ids), claimable(now))),
+                        new Update()
+                                .set("status", OutboxStatus.PUBLISHING)
+                                .set("claimToken", claimToken)
+                                .set("leaseUntil", now.plus(lease))
+                                .inc("attempts", 1),
+                        TransactionOutboxEntry.class))
+                .flatMapMany(result -> reactiveMongoTemplate.find(
+                        Query.query(Criteria.where("claimToken").is(claimToken)), TransactionOutboxEntry.class));
+    }
+
+    @Override
+    public Mono<Void> markPublished(String id, String claimToken, String transactionId) {
+        return reactiveMongoTemplate.updateFirst(claimedBy(id, claimToken),
+                        new Update()
+                                .set("status", OutboxStatus.PUBLISHED)
+                                .set("transactionId", transactionId)
+                                .set("publishedAt", LocalDateTime.now())
+                                .unset("claimToken")
+                                .unset("leaseUntil")
+                                .unset("lastError"),
+                        TransactionOutboxEntry.class)
+                .then();
+    }
+
+    @Override
+    public Mono<Void> reschedule(String id, String claimToken, LocalDateTime nextAttemptAt, String error) {
+        return reactiveMongoTemplate.updateFirst(claimedBy(id, claimToken),
+                        new Update()
+                                .set("status", OutboxStatus.PENDING)
+                                .set("nextAttemptAt", nextAttemptAt)
+                                .set("lastError", error)
+                                .unset("claimToken")
+                                .unset("leaseUntil"),
+                        TransactionOutboxEntry.class)
+                .then();
+    }
+
+    @Override
+    public Mono<Void> markFailed(String id, String claimToken, String error) {
+        return reactiveMongoTemplate.updateFirst(claimedBy(id, claimToken),
+                        new Update()
+                                .set("status", OutboxStatus.FAILED)
+                                .set("lastError", error)
+                                .unset("claimToken")
+                                .unset("leaseUntil"),
+                        TransactionOutboxEntry.class)
+                .then();
+    }
+
+    private Criteria claimable(LocalDateTime now) {
+        return new Criteria().orOperator(
+                Criteria.where("status").is(OutboxStatus.PENDING).and("nextAttemptAt").lte(now),
+                Criteria.where("status").is(OutboxStatus.PUBLISHING).and("leaseUntil").lt(now));
+    }
+
+    private Query claimedBy(String id, String claimToken) {
+        return Query.query(Criteria.where("id").is(id).and("claimToken").is(claimToken));
+    }
+}
@@ -11,6 +11,8 @@ import java.math.BigDecimal;
  */
 public interface DebitCardService {
     Flux<DebitCardDto> findAll();
+    Flux<DebitCardDto> streamAll();
+    Mono<DebitCardPageDto> findPage(String after, Integer size);
     Mono<DebitCardDto> findById(String id);
     Flux<DebitCardDto> findByCustomerId(String customerId);
     Mono<DebitCardDto> findByCardNumber(String cardNumber);
@@ -19,6 +21,10 @@ public interface DebitCardService {
     Mono<Void> delete(String id);
     Mono<DebitCardDto> associateAccounts(AccountAssociationRequest request);
     Mono<TransactionDto> processPayment(DebitCardOperationRequest request);
+    Mono<TransactionDto> processPayment(DebitCardOperationRequest request, String idempotencyKey);
+    Flux<PaymentResultDto> processPayments(Flux<DebitCardOperationRequest> requests);
     Mono<CardMovementsReportDto> getLastMovements(String debitCardId, int limit);
+    Flux<MovementDto> streamLastMovements(String debitCardId, int limit);
     Mono<BalanceDto> getPrimaryAccountBalance(String debitCardId);
+    Mono<Void> evictCustomerOverdueDebts(String customerId);
 }
\ No newline at end of file
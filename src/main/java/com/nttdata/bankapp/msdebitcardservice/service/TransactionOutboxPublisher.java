@@ -0,0 +1,201 @@
+package com.nttdata.bankapp.msdebitcardservice.service;
+
+import com.nttdata.bankapp.msdebitcardservice.client.TransactionService;
+import com.nttdata.bankapp.msdebitcardservice.dto.TransactionDto;
+import com.nttdata.bankapp.msdebitcardservice.model.TransactionOutboxEntry;
+import com.nttdata.bankapp.msdebitcardservice.repository.TransactionOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Publica en segundo plano las transacciones del outbox en el servicio de transacciones,
+ * por micro-lotes y con reintentos con espera exponencial. Las entradas que agotan los
+ * intentos quedan en estado FAILED para revisión manual.
+ */
+@Component
+@Slf4j
+public class TransactionOutboxPublisher {
+    private final TransactionOutboxRepository transactionOutboxRepository;
+    private final TransactionService transactionService;
+    private final Counter publishedEntries;
+    private final Counter retriedEntries;
+    private final Counter failedEntries;
+    private final boolean enabled;
+    private final Duration pollInterval;
+    private final int batchSize;
+    private final int concurrency;
+    private final Duration lease;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration requestTimeout;
+    private final Duration batchEndpointRecheck;
+    private volatile long batchEndpointRetryAt;
+    private Disposable publishTask;
+
+    public TransactionOutboxPublisher(TransactionOutboxRepository transactionOutboxRepository,
+                                      TransactionService transactionService,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${app.payment.outbox.enabled:false}") boolean enabled,
+                                      @Value("${app.payment.outbox.poll-interval:200ms}") Duration pollInterval,
+                                      @Value("${app.payment.outbox.batch-size:50}") int batchSize,
+                                      @Value("${app.payment.outbox.concurrency:8}") int concurrency,
+                                      @Value("${app.payment.outbox.lease:30s}") Duration lease,
+                                      @Value("${app.payment.outbox.max-attempts:10}") int maxAttempts,
+                                      @Value("${app.payment.outbox.initial-backoff:1s}") Duration initialBackoff,
+                                      @Value("${app.payment.outbox.max-backoff:5m}") Duration maxBackoff,
+                                      @Value("${app.payment.outbox.request-timeout:5s}") Duration requestTimeout,
+                                      @Value("${app.payment.outbox.batch-endpoint-recheck:5m}") Duration batchEndpointRecheck) {
+        this.transactionOutboxRepository = transactionOutboxRepository;
+        this.transactionService = transactionService;
+        this.enabled = enabled;
+        this.pollInterval = pollInterval;
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        this.lease = lease;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.requestTimeout = requestTimeout;
+        this.batchEndpointRecheck = batchEndpointRecheck;
+        this.batchEndpointRetryAt = System.nanoTime();
+        this.publishedEntries = outboxCounter(meterRegistry, "published");
+        this.retriedEntries = outboxCounter(meterRegistry, "retried");
+        this.failedEntries = outboxCounter(meterRegistry, "failed");
+    }
+
+    /**
+     * Programa la publicación periódica del outbox.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        publishTask = Flux.interval(pollInterval)
+                .onBackpressureDrop()
+                // Mientras haya entradas listas se publican lotes seguidos, sin esperar al siguiente tick
+                .concatMap(tick -> publishBatch()
+                        .expand(count -> count == batchSize ? publishBatch() : Mono.empty())
+                        .onErrorResume(e -> {
+                            log.warn("Error publishing transaction outbox: {}", e.getMessage());
+                            return Flux.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (publishTask != null) {
+            publishTask.dispose();
+        }
+    }
+
+    /**
+     * Toma y publica un lote de entradas.
+     * @return Mono con la cantidad de entradas tomadas
+     */
+    private Mono<Integer> publishBatch() {
+        return transactionOutboxRepository.claimBatch(batchSize, lease)
+                .collectList()
+                .flatMap(entries -> entries.isEmpty()
+                        ? Mono.just(0)
+                        : publish(entries).thenReturn(entries.size()));
+    }
+
+    private Mono<Void> publish(List<TransactionOutboxEntry> entries) {
+        if (System.nanoTime() - batchEndpointRetryAt < 0) {
+            return publishOneByOne(entries);
+        }
+        List<TransactionService.DebitCardTransactionRequest> requests = entries.stream()
+                .map(this::toRequest)
+                .collect(Collectors.toList());
+        return transactionService.createDebitCardTransactions(requests)
+                .timeout(requestTimeout)
+                .flatMap(transactions -> {
+                    if (transactions.size() != entries.size()) {
+                        return Mono.<Void>error(new IllegalStateException("Transaction batch returned "
+                                + transactions.size() + " results for " + entries.size() + " requests"));
+                    }
+                    return Flux.range(0, entries.size())
+                            .flatMap(i -> markPublished(entries.get(i), transactions.get(i)), concurrency)
+                            .then();
+                })
+                .onErrorResume(WebClientResponseException.NotFound.class, e -> {
+                    // El servicio de transacciones no expone el alta en lote: publicar entrada por entrada
+                    // y volver a probarlo más tarde, por si se desplegó una versión que sí lo tiene
+                    log.warn("Batch transaction endpoint not available, publishing outbox entries one by one for {}",
+                            batchEndpointRecheck);
+                    batchEndpointRetryAt = System.nanoTime() + batchEndpointRecheck.toNanos();
+                    return publishOneByOne(entries);
+                })
+                .onErrorResume(e -> Flux.fromIterable(entries)
+                        .flatMap(entry -> retryLater(entry, e), concurrency)
+                        .then());
+    }
+
+    private Mono<Void> publishOneByOne(List<TransactionOutboxEntry> entries) {
+        return Flux.fromIterable(entries)
+                .flatMap(entry -> transactionService.createDebitCardTransaction(toRequest(entry))
+                        .timeout(requestTimeout)
+                        .flatMap(transaction -> markPublished(entry, transaction))
+                        .onErrorResume(e -> retryLater(entry, e)), concurrency)
+                .then();
+    }
+
+    private Mono<Void> markPublished(TransactionOutboxEntry entry, TransactionDto transaction) {
+        return transactionOutboxRepository.markPublished(entry.getId(), entry.getClaimToken(), transaction.getId())
+                .doOnSuccess(ignored -> publishedEntries.increment());
+    }
+
+    private Mono<Void> retryLater(TransactionOutboxEntry entry, Throwable error) {
+        // attempts ya incluye el intento actual, sumado al tomar la entrada
+        if (entry.getAttempts() >= maxAttempts) {
+            log.error("Giving up on outbox entry {} for debit card {} after {} attempts: {}",
+                    entry.getId(), entry.getDebitCardId(), entry.getAttempts(), error.getMessage());
+            return transactionOutboxRepository.markFailed(entry.getId(), entry.getClaimToken(), error.getMessage())
+                    .doOnSuccess(ignored -> failedEntries.increment());
+        }
+        return transactionOutboxRepository.reschedule(entry.getId(), entry.getClaimToken(),
+                        LocalDateTime.now().plus(backoff(entry.getAttempts())), error.getMessage())
+                .doOnSuccess(ignored -> retriedEntries.increment());
+    }
+
+    private Duration backoff(int attempts) {
+        Duration delay = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    private TransactionService.DebitCardTransactionRequest toRequest(TransactionOutboxEntry entry) {
+        return TransactionService.DebitCardTransactionRequest.builder()
+                .debitCardId(entry.getDebitCardId())
+                .accountId(entry.getAccountId())
+                .amount(entry.getAmount())
+                .description(entry.getDescription())
+                .customerId(entry.getCustomerId())
+                .reference(entry.getId())
+                .build();
+    }
+
+    private static Counter outboxCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("transaction.outbox.entries")
+                .description("Entradas del outbox procesadas por resultado")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -1,27 +1,57 @@
 package com.nttdata.bankapp.msdebitcardservice.service.impl;
 
+import com.nttdata.bankapp.msdebitcardservice.cache.CardNumberRegistry;
+import com.nttdata.bankapp.msdebitcardservice.cache.DebitCardCache;
+import com.nttdata.bankapp.msdebitcardservice.cache.IdempotencyStore;
+import com.nttdata.bankapp.msdebitcardservice.cache.RecentMovementStore;
+import com.nttdata.bankapp.msdebitcardservice.client.AccountNumberResolver;
 import com.nttdata.bankapp.msdebitcardservice.client.AccountService;
 import com.nttdata.bankapp.msdebitcardservice.client.CustomerService;
 import com.nttdata.bankapp.msdebitcardservice.client.TransactionService;
 import com.nttdata.bankapp.msdebitcardservice.dto.*;
+import com.nttdata.bankapp.msdebitcardservice.exception.ConcurrencyLimitExceededException;
 import com.nttdata.bankapp.msdebitcardservice.exception.DebitCardNotFoundException;
+import com.nttdata.bankapp.msdebitcardservice.exception.IdempotencyConflictException;
 import com.nttdata.bankapp.msdebitcardservice.exception.InsufficientFundsException;
 import com.nttdata.bankapp.msdebitcardservice.exception.InvalidOperationException;
 import com.nttdata.bankapp.msdebitcardservice.model.DebitCard;
+import com.nttdata.bankapp.msdebitcardservice.model.OutboxStatus;
+import com.nttdata.bankapp.msdebitcardservice.model.TransactionOutboxEntry;
+import com.nttdata.bankapp.msdebitcardservice.model.TransactionType;
 import com.nttdata.bankapp.msdebitcardservice.repository.DebitCardRepository;
+import com.nttdata.bankapp.msdebitcardservice.repository.TransactionOutboxRepository;
 import com.nttdata.bankapp.msdebitcardservice.service.DebitCardService;
+import com.nttdata.bankapp.msdebitcardservice.support.CardNumberGenerator;
+import com.nttdata.bankapp.msdebitcardservice.support.KeyedSequencer;
+import com.nttdata.bankapp.msdebitcardservice.support.SingleFlight;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import io.github.resilience4j.timelimiter.annotation.TimeLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -33,23 +63,106 @@ import java.util.stream.Collectors;
 public class DebitCardServiceImpl implements DebitCardService {
 
     private final DebitCardRepository debitCardRepository;
+    private final DebitCardCache debitCardCache;
     private final CustomerService customerService;
     private final AccountService accountService;
+    private final AccountNumberResolver accountNumberResolver;
     private final TransactionService transactionService;
+    private final KeyedSequencer paymentSequencer;
+    private final IdempotencyStore idempotencyStore;
+    private final Validator validator;
+    private final CardNumberGenerator cardNumberGenerator;
+    private final CardNumberRegistry cardNumberRegistry;
+    private final SingleFlight singleFlight;
+    private final RecentMovementStore recentMovementStore;
+    private final TransactionOutboxRepository transactionOutboxRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.payment.parallel-balance-probe.enabled:false}")
+    private boolean parallelBalanceProbe;
+
+    @Value("${app.payment.parallel-balance-probe.concurrency:4}")
+    private int balanceProbeConcurrency;
+
+    @Value("${app.payment.outbox.enabled:false}")
+    private boolean outboxEnabled;
+
+    @Value("${app.payment.bulk.concurrency:16}")
+    private int bulkPaymentConcurrency;
+
+    // El mismo límite que el TimeLimiter aplica a un pago individual
+    @Value("${resilience4j.timelimiter.instances.debitCardService.timeout-duration:1s}")
+    private Duration paymentTimeout;
+
+    @Value("${app.card.issue-retries:3}")
+    private int cardIssueRetries;
+
+    @Value("${app.pagination.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${app.pagination.max-size:500}")
+    private int maxPageSize;
+
+    @Value("${app.pagination.stream-batch-size:256}")
+    private int streamBatchSize;
+
+    @Value("${app.movements.enrichment-concurrency:8}")
+    private int movementEnrichmentConcurrency;
 
     @Override
     public Flux<DebitCardDto> findAll() {
-        log.info("Finding all debit cards");
-        return debitCardRepository.findAll()
+        log.info("Finding all debit cards (first {} by ID)", maxPageSize);
+        // Acotado a una página máxima y sin cvv ni cuentas asociadas; el recorrido completo es con /page o NDJSON
+        return debitCardRepository.findListViewBy(PageRequest.of(0, maxPageSize, Sort.by(Sort.Direction.ASC, "id")))
+                .map(this::mapToDto);
+    }
+
+    @Override
+    public Flux<DebitCardDto> streamAll() {
+        log.info("Streaming all debit cards");
+        // limitRate acota lo que se pide al cursor de Mongo según la demanda del cliente
+        return debitCardRepository.findAllListView()
+                .limitRate(streamBatchSize)
                 .map(this::mapToDto);
     }
 
+    @Override
+    public Mono<DebitCardPageDto> findPage(String after, Integer size) {
+        int pageSize = size != null ? size : defaultPageSize;
+        log.info("Finding debit cards page after: {} with size: {}", after, pageSize);
+
+        if (pageSize < 1 || pageSize > maxPageSize) {
+            return Mono.error(new InvalidOperationException("Page size must be between 1 and " + maxPageSize));
+        }
+        if (after != null && !ObjectId.isValid(after)) {
+            return Mono.error(new InvalidOperationException("Invalid page cursor: " + after));
+        }
+
+        // Se pide un elemento extra para saber si existe una página siguiente
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1, Sort.by(Sort.Direction.ASC, "id"));
+        Flux<DebitCard> cards = after == null
+                ? debitCardRepository.findListViewBy(pageRequest)
+                : debitCardRepository.findListViewByIdGreaterThan(new ObjectId(after), pageRequest);
+
+        return cards.collectList()
+                .map(page -> {
+                    boolean hasNext = page.size() > pageSize;
+                    List<DebitCard> content = hasNext ? page.subList(0, pageSize) : page;
+                    return DebitCardPageDto.builder()
+                            .content(content.stream().map(this::mapToDto).collect(Collectors.toList()))
+                            .size(content.size())
+                            .nextCursor(hasNext ? content.get(content.size() - 1).getId() : null)
+                            .build();
+                });
+    }
+
     @Override
     public Mono<DebitCardDto> findById(String id) {
         log.info("Finding debit card by id: {}", id);
-        return debitCardRepository.findById(id)
+        // Las lecturas concurrentes de la misma tarjeta comparten una sola consulta
+        return singleFlight.execute("findById", id, () -> debitCardRepository.findById(id)
                 .map(this::mapToDto)
-                .switchIfEmpty(Mono.error(new DebitCardNotFoundException("Debit card not found with id: " + id)));
+                .switchIfEmpty(Mono.error(new DebitCardNotFoundException("Debit card not found with id: " + id))));
     }
 
     @Override
@@ -62,6 +175,10 @@ public class DebitCardServiceImpl implements DebitCardService {
     @Override
     public Mono<DebitCardDto> findByCardNumber(String cardNumber) {
         log.info("Finding debit card by card number: {}", cardNumber);
+        // Los números con formato inválido o ausentes del registro se rechazan sin consultar Mongo
+        if (!cardNumberRegistry.mightExist(cardNumber)) {
+            return Mono.error(new DebitCardNotFoundException("Debit card not found with card number: " + cardNumber));
+        }
         return debitCardRepository.findByCardNumber(cardNumber)
                 .map(this::mapToDto)
                 .switchIfEmpty(Mono.error(new DebitCardNotFoundException("Debit card not found with card number: " + cardNumber)));
@@ -73,60 +190,73 @@ public class DebitCardServiceImpl implements DebitCardService {
     public Mono<DebitCardDto> save(DebitCardDto debitCardDto) {
         log.info("Saving new debit card: {}", debitCardDto);
 
-        // Verificar si el cliente existe
-        return customerService.customerExists(debitCardDto.getCustomerId())
-                .flatMap(exists -> {
-                    if (!exists) {
-                        return Mono.error(new InvalidOperationException("Customer not found with id: " + debitCardDto.getCustomerId()));
+        return validateIssuance(debitCardDto)
+                .then(Mono.defer(() -> {
+                    DebitCard debitCard = mapToEntity(debitCardDto);
+
+                    // Generar número de tarjeta, fecha de expiración y CVV
+                    debitCard.setCardNumber(cardNumberGenerator.nextCardNumber());
+                    debitCard.setExpirationDate(LocalDate.now().plusYears(4));
+                    debitCard.setCvv(cardNumberGenerator.nextCvv());
+                    debitCard.setActive(true);
+                    debitCard.setCreatedAt(LocalDateTime.now());
+                    debitCard.setUpdatedAt(LocalDateTime.now());
+
+                    // Agregar cuenta principal a la lista de cuentas asociadas si no está ya
+                    if (!debitCard.getAssociatedAccountIds().contains(debitCard.getPrimaryAccountId())) {
+                        debitCard.getAssociatedAccountIds().add(debitCard.getPrimaryAccountId());
                     }
 
-                    // Verificar si el cliente tiene deudas vencidas
-                    return customerService.hasOverdueDebts(debitCardDto.getCustomerId())
-                            .flatMap(hasDebts -> {
-                                if (hasDebts) {
-                                    return Mono.error(new InvalidOperationException("Customer has overdue debts and cannot acquire new products"));
-                                }
+                    return debitCardRepository.save(debitCard);
+                })
+                        // Ante una colisión improbable con el índice único, reintentar con otro número
+                        .retryWhen(Retry.max(cardIssueRetries).filter(DuplicateKeyException.class::isInstance)))
+                .doOnNext(debitCard -> cardNumberRegistry.add(debitCard.getCardNumber()))
+                .map(this::mapToDto);
+    }
 
-                                // Verificar si existe la cuenta principal
-                                return accountService.accountExists(debitCardDto.getPrimaryAccountId())
-                                        .flatMap(accountExists -> {
-                                            if (!accountExists) {
-                                                return Mono.error(new InvalidOperationException("Primary account not found with id: " + debitCardDto.getPrimaryAccountId()));
-                                            }
-
-                                            // Verificar que la cuenta pertenezca al cliente
-                                            return accountService.verifyAccountOwnership(debitCardDto.getPrimaryAccountId(), debitCardDto.getCustomerId())
-                                                    .flatMap(isOwner -> {
-                                                        if (!isOwner) {
-                                                            return Mono.error(new InvalidOperationException("Primary account does not belong to the customer"));
-                                                        }
-
-                                                        DebitCard debitCard = mapToEntity(debitCardDto);
-
-                                                        // Generar número de tarjeta, fecha de expiración y CVV
-                                                        debitCard.setCardNumber(generateCardNumber());
-                                                        debitCard.setExpirationDate(LocalDate.now().plusYears(4));
-                                                        debitCard.setCvv(generateCVV());
-                                                        debitCard.setActive(true);
-                                                        debitCard.setCreatedAt(LocalDateTime.now());
-                                                        debitCard.setUpdatedAt(LocalDateTime.now());
-
-                                                        // Agregar cuenta principal a la lista de cuentas asociadas si no está ya
-                                                        if (!debitCard.getAssociatedAccountIds().contains(debitCard.getPrimaryAccountId())) {
-                                                            debitCard.getAssociatedAccountIds().add(debitCard.getPrimaryAccountId());
-                                                        }
-
-                                                        return debitCardRepository.save(debitCard).map(this::mapToDto);
-                                                    });
-                                        });
-                            });
-                });
+    /**
+     * Ejecuta en paralelo las validaciones para emitir una tarjeta. Ninguna depende de otra,
+     * por lo que la primera respuesta negativa termina la validación y cancela las pendientes.
+     *
+     * @param debitCardDto Datos de la tarjeta a emitir
+     * @return Mono vacío si todas las validaciones son exitosas
+     */
+    private Mono<Void> validateIssuance(DebitCardDto debitCardDto) {
+        String customerId = debitCardDto.getCustomerId();
+        String primaryAccountId = debitCardDto.getPrimaryAccountId();
+
+        return Mono.when(
+                // Verificar si el cliente existe
+                require(customerService.customerExists(customerId),
+                        () -> new InvalidOperationException("Customer not found with id: " + customerId)),
+                // Verificar si el cliente tiene deudas vencidas
+                require(customerService.hasOverdueDebts(customerId).map(hasDebts -> !hasDebts),
+                        () -> new InvalidOperationException("Customer has overdue debts and cannot acquire new products")),
+                // Verificar si existe la cuenta principal
+                require(accountService.accountExists(primaryAccountId),
+                        () -> new InvalidOperationException("Primary account not found with id: " + primaryAccountId)),
+                // Verificar que la cuenta pertenezca al cliente
+                require(accountService.verifyAccountOwnership(primaryAccountId, customerId),
+                        () -> new InvalidOperationException("Primary account does not belong to the customer")));
+    }
+
+    /**
+     * Convierte una verificación booleana en un Mono vacío o en un error.
+     * @param check Verificación a evaluar
+     * @param error Proveedor del error si la verificación es negativa
+     * @return Mono vacío si la verificación es positiva
+     */
+    private Mono<Void> require(Mono<Boolean> check, Supplier<RuntimeException> error) {
+        return check.defaultIfEmpty(false)
+                .flatMap(ok -> ok ? Mono.<Void>empty() : Mono.<Void>error(error.get()));
     }
 
     // Método de fallback para manejo de errores con Circuit Breaker
     public Mono<DebitCardDto> saveFallback(DebitCardDto debitCardDto, Throwable t) {
+        countFallback("save", t);
         log.error("Fallback for save debit card. Error: {}", t.getMessage());
-        return Mono.error(new RuntimeException("Service is currently unavailable. Please try again later."));
+        return Mono.error(fallbackError(t));
     }
 
     @Override
@@ -134,38 +264,34 @@ public class DebitCardServiceImpl implements DebitCardService {
     @TimeLimiter(name = "debitCardService")
     public Mono<DebitCardDto> update(String id, DebitCardDto debitCardDto) {
         log.info("Updating debit card id: {}", id);
-        return debitCardRepository.findById(id)
-                .switchIfEmpty(Mono.error(new DebitCardNotFoundException("Debit card not found with id: " + id)))
-                .flatMap(existingCard -> {
-                    // No permitir cambiar campos críticos
-                    if (debitCardDto.getCustomerId() != null && !debitCardDto.getCustomerId().equals(existingCard.getCustomerId())) {
-                        return Mono.error(new InvalidOperationException("Cannot change debit card owner"));
-                    }
-
-                    // Actualizar campos permitidos
-                    if (debitCardDto.getActive() != null) {
-                        existingCard.setActive(debitCardDto.getActive());
-                    }
-
-                    existingCard.setUpdatedAt(LocalDateTime.now());
-
-                    return debitCardRepository.save(existingCard);
-                })
+        // Actualización atómica de los campos permitidos; el filtro por cliente impide cambiar el dueño
+        return debitCardRepository.updateActive(id, debitCardDto.getCustomerId(), debitCardDto.getActive())
+                .switchIfEmpty(Mono.defer(() -> debitCardRepository.existsById(id)
+                        .flatMap(exists -> Mono.<DebitCard>error(exists
+                                ? new InvalidOperationException("Cannot change debit card owner")
+                                : new DebitCardNotFoundException("Debit card not found with id: " + id)))))
+                .doOnNext(debitCardCache::put)
                 .map(this::mapToDto);
     }
 
     // Método de fallback para manejo de errores con Circuit Breaker
     public Mono<DebitCardDto> updateFallback(String id, DebitCardDto debitCardDto, Throwable t) {
+        countFallback("update", t);
         log.error("Fallback for update debit card. Error: {}", t.getMessage());
-        return Mono.error(new RuntimeException("Service is currently unavailable. Please try again later."));
+        return Mono.error(fallbackError(t));
     }
 
     @Override
     public Mono<Void> delete(String id) {
         log.info("Deleting debit card id: {}", id);
-        return debitCardRepository.findById(id)
+        return debitCardRepository.removeById(id)
                 .switchIfEmpty(Mono.error(new DebitCardNotFoundException("Debit card not found with id: " + id)))
-                .flatMap(debitCard -> debitCardRepository.deleteById(id));
+                .doOnNext(debitCard -> {
+                    debitCardCache.invalidate(id);
+                    cardNumberRegistry.remove(debitCard.getCardNumber());
+                    recentMovementStore.invalidate(id);
+                })
+                .then();
     }
 
     @Override
@@ -174,7 +300,7 @@ public class DebitCardServiceImpl implements DebitCardService {
     public Mono<DebitCardDto> associateAccounts(AccountAssociationRequest request) {
         log.info("Associating accounts to debit card: {}", request);
 
-        return debitCardRepository.findById(request.getDebitCardId())
+        return debitCardCache.findById(request.getDebitCardId())
                 .switchIfEmpty(Mono.error(new DebitCardNotFoundException("Debit card not found with id: " + request.getDebitCardId())))
                 .flatMap(debitCard -> {
                     // Verificar que la tarjeta pertenezca al cliente
@@ -182,65 +308,66 @@ public class DebitCardServiceImpl implements DebitCardService {
                         return Mono.error(new InvalidOperationException("Debit card does not belong to the customer"));
                     }
 
-                    // Verificar si la cuenta principal existe
-                    return accountService.accountExists(request.getPrimaryAccountId())
-                            .flatMap(primaryExists -> {
-                                if (!primaryExists) {
-                                    return Mono.error(new InvalidOperationException("Primary account not found with id: " + request.getPrimaryAccountId()));
+                    // Verificar la cuenta principal y la pertenencia de todas las cuentas en paralelo
+                    return Mono.when(
+                                    require(accountService.accountExists(request.getPrimaryAccountId()),
+                                            () -> new InvalidOperationException("Primary account not found with id: " + request.getPrimaryAccountId())),
+                                    verifyAccountsOwnership(request))
+                            .then(Mono.defer(() -> {
+                                // Asegurar que la cuenta principal esté en la lista de cuentas asociadas
+                                List<String> uniqueAccountIds = new ArrayList<>(request.getAssociatedAccountIds());
+                                if (!uniqueAccountIds.contains(request.getPrimaryAccountId())) {
+                                    uniqueAccountIds.add(0, request.getPrimaryAccountId());
+                                } else {
+                                    // Si ya está en la lista, moverla al inicio
+                                    uniqueAccountIds.remove(request.getPrimaryAccountId());
+                                    uniqueAccountIds.add(0, request.getPrimaryAccountId());
                                 }
 
-                                // Verificar que la cuenta principal pertenezca al cliente
-                                return accountService.verifyAccountOwnership(request.getPrimaryAccountId(), request.getCustomerId())
-                                        .flatMap(isOwner -> {
-                                            if (!isOwner) {
-                                                return Mono.error(new InvalidOperationException("Primary account does not belong to the customer"));
-                                            }
-
-                                            // Verificar que todas las cuentas asociadas existan y pertenezcan al cliente
-                                            List<Mono<Boolean>> ownershipChecks = request.getAssociatedAccountIds().stream()
-                                                    .map(accountId -> accountService.verifyAccountOwnership(accountId, request.getCustomerId())
-                                                            .flatMap(belongsToCustomer -> {
-                                                                if (!belongsToCustomer) {
-                                                                    return Mono.error(new InvalidOperationException("Account with id " + accountId + " does not belong to the customer"));
-                                                                }
-                                                                return Mono.just(true);
-                                                            }))
-                                                    .collect(Collectors.toList());
+                                // Eliminar duplicados manteniendo el orden
+                                List<String> associatedAccountIds = new ArrayList<>(new LinkedHashSet<>(uniqueAccountIds));
 
-                                            return Flux.merge(ownershipChecks)
-                                                    .collectList()
-                                                    .flatMap(results -> {
-                                                        // Actualizar la tarjeta con la nueva cuenta principal y cuentas asociadas
-                                                        debitCard.setPrimaryAccountId(request.getPrimaryAccountId());
-
-                                                        // Asegurar que la cuenta principal esté en la lista de cuentas asociadas
-                                                        List<String> uniqueAccountIds = new ArrayList<>(request.getAssociatedAccountIds());
-                                                        if (!uniqueAccountIds.contains(request.getPrimaryAccountId())) {
-                                                            uniqueAccountIds.add(0, request.getPrimaryAccountId());
-                                                        } else {
-                                                            // Si ya está en la lista, moverla al inicio
-                                                            uniqueAccountIds.remove(request.getPrimaryAccountId());
-                                                            uniqueAccountIds.add(0, request.getPrimaryAccountId());
-                                                        }
-
-                                                        // Eliminar duplicados manteniendo el orden
-                                                        debitCard.setAssociatedAccountIds(new ArrayList<>(
-                                                                new LinkedHashSet<>(uniqueAccountIds)));
-
-                                                        debitCard.setUpdatedAt(LocalDateTime.now());
-
-                                                        return debitCardRepository.save(debitCard);
-                                                    });
-                                        });
-                            });
+                                // Actualizar atómicamente la cuenta principal y las cuentas asociadas
+                                return debitCardRepository.updateAccounts(debitCard.getId(), request.getCustomerId(),
+                                                request.getPrimaryAccountId(), associatedAccountIds)
+                                        .switchIfEmpty(Mono.error(new DebitCardNotFoundException("Debit card not found with id: " + request.getDebitCardId())));
+                            }));
                 })
+                .doOnNext(debitCardCache::put)
                 .map(this::mapToDto);
     }
 
+    /**
+     * Verifica con una sola consulta en lote que la cuenta principal y las cuentas asociadas
+     * pertenezcan al cliente.
+     *
+     * @param request Datos de la asociación
+     * @return Mono vacío si todas las cuentas pertenecen al cliente
+     */
+    private Mono<Void> verifyAccountsOwnership(AccountAssociationRequest request) {
+        Set<String> accountIds = new LinkedHashSet<>();
+        accountIds.add(request.getPrimaryAccountId());
+        accountIds.addAll(request.getAssociatedAccountIds());
+
+        return accountService.verifyAccountsOwnership(accountIds, request.getCustomerId())
+                .flatMap(ownership -> {
+                    for (String accountId : accountIds) {
+                        if (!Boolean.TRUE.equals(ownership.get(accountId))) {
+                            String message = accountId.equals(request.getPrimaryAccountId())
+                                    ? "Primary account does not belong to the customer"
+                                    : "Account with id " + accountId + " does not belong to the customer";
+                            return Mono.<Void>error(new InvalidOperationException(message));
+                        }
+                    }
+                    return Mono.<Void>empty();
+                });
+    }
+
     // Método de fallback para manejo de errores con Circuit Breaker
     public Mono<DebitCardDto> associateAccountsFallback(AccountAssociationRequest request, Throwable t) {
+        countFallback("associateAccounts", t);
         log.error("Fallback for associate accounts. Error: {}", t.getMessage());
-        return Mono.error(new RuntimeException("Service is currently unavailable. Please try again later."));
+        return Mono.error(fallbackError(t));
     }
 
     @Override
@@ -249,6 +376,108 @@ public class DebitCardServiceImpl implements DebitCardService {
     public Mono<TransactionDto> processPayment(DebitCardOperationRequest request) {
         log.info("Processing payment with debit card: {}", request);
 
+        // Los pagos de una misma tarjeta se ejecutan en orden; los de tarjetas distintas, en paralelo
+        return paymentSequencer.submit(request.getDebitCardId(), () -> executePayment(request));
+    }
+
+    @Override
+    @CircuitBreaker(name = "debitCardService", fallbackMethod = "idempotentPaymentFallback")
+    @TimeLimiter(name = "debitCardService")
+    public Mono<TransactionDto> processPayment(DebitCardOperationRequest request, String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return processPayment(request);
+        }
+        log.info("Processing payment with debit card: {} and idempotency key: {}", request, idempotencyKey);
+
+        // Un reintento con la misma clave devuelve el resultado original sin volver a debitar.
+        // Con la clave ya reservada, el pago y el guardado del resultado terminan aunque el llamador cancele;
+        // si no, la clave quedaría pendiente y los reintentos no podrían obtener el resultado
+        return detached(idempotencyStore.execute(idempotencyKey, paymentFingerprint(request),
+                () -> paymentSequencer.submit(request.getDebitCardId(), () -> executePayment(request))));
+    }
+
+    // Método de fallback para manejo de errores con Circuit Breaker
+    public Mono<TransactionDto> idempotentPaymentFallback(DebitCardOperationRequest request, String idempotencyKey, Throwable t) {
+        countFallback("idempotentPayment", t);
+        log.error("Fallback for process payment with idempotency key {}. Error: {}", idempotencyKey, t.getMessage());
+        return Mono.error(fallbackError(t));
+    }
+
+    @Override
+    public Flux<PaymentResultDto> processPayments(Flux<DebitCardOperationRequest> requests) {
+        log.info("Processing bulk payments with concurrency: {}", bulkPaymentConcurrency);
+
+        // flatMap acota los pagos en curso y solo pide nuevas solicitudes a medida que terminan;
+        // el orden por tarjeta lo garantiza el secuenciador, que encola en el orden de llegada
+        return requests.index()
+                .flatMap(indexed -> processBulkPayment(indexed.getT1(), indexed.getT2()), bulkPaymentConcurrency);
+    }
+
+    /**
+     * Procesa un pago de un lote. Los errores se devuelven como resultado del ítem
+     * para no interrumpir el resto del lote. Cada ítem tiene el mismo límite de tiempo que un pago
+     * individual, contando la espera por los pagos previos de la misma tarjeta, para que un servicio
+     * remoto colgado no retenga su lugar en el lote indefinidamente. Un pago ya iniciado sigue hasta
+     * terminar, así que un ítem vencido puede haberse debitado igual.
+     *
+     * @param index Posición de la solicitud en el lote
+     * @param request Datos de la operación
+     * @return Mono con el resultado del pago
+     */
+    private Mono<PaymentResultDto> processBulkPayment(long index, DebitCardOperationRequest request) {
+        Set<ConstraintViolation<DebitCardOperationRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            String error = violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .collect(Collectors.joining(", "));
+            return Mono.just(failedPayment(index, request, error));
+        }
+
+        return paymentSequencer.submit(request.getDebitCardId(), () -> executePayment(request))
+                .timeout(paymentTimeout, Mono.error(() -> new TimeoutException(
+                        "Payment did not complete within " + paymentTimeout.toMillis() + " ms, its outcome is unknown")))
+                .map(transaction -> PaymentResultDto.builder()
+                        .index(index)
+                        .debitCardId(request.getDebitCardId())
+                        .success(true)
+                        .transaction(transaction)
+                        .build())
+                .onErrorResume(e -> Mono.just(failedPayment(index, request, e.getMessage())));
+    }
+
+    private PaymentResultDto failedPayment(long index, DebitCardOperationRequest request, String error) {
+        return PaymentResultDto.builder()
+                .index(index)
+                .debitCardId(request.getDebitCardId())
+                .success(false)
+                .error(error)
+                .build();
+    }
+
+    /**
+     * Calcula la huella de una solicitud de pago para detectar claves de idempotencia reutilizadas.
+     * @param request Datos de la operación
+     * @return String con la huella
+     */
+    private String paymentFingerprint(DebitCardOperationRequest request) {
+        return String.join("|",
+                request.getDebitCardId(),
+                request.getCustomerId(),
+                request.getAmount().stripTrailingZeros().toPlainString(),
+                Objects.toString(request.getDescription(), ""));
+    }
+
+    /**
+     * Ejecuta un pago con tarjeta de débito. Se invoca con los pagos de la tarjeta ya serializados;
+     * el secuenciador no cancela un pago ya iniciado, así que el débito y su registro terminan
+     * aunque el llamador cancele (p. ej. por el TimeLimiter), y la tarjeta sigue ocupada hasta entonces.
+     *
+     * @param request Datos de la operación
+     * @return Mono con la transacción creada
+     */
+    private Mono<TransactionDto> executePayment(DebitCardOperationRequest request) {
+        // La autorización lee la tarjeta de Mongo: la caché local puede no ver una desactivación
+        // o un cambio de cuentas hecho en otra instancia
         return debitCardRepository.findById(request.getDebitCardId())
                 .switchIfEmpty(Mono.error(new DebitCardNotFoundException("Debit card not found with id: " + request.getDebitCardId())))
                 .flatMap(debitCard -> {
@@ -265,22 +494,93 @@ public class DebitCardServiceImpl implements DebitCardService {
                     // Obtener la lista ordenada de cuentas para intentar el pago
                     List<String> accountsToTry = new ArrayList<>(debitCard.getAssociatedAccountIds());
 
-                    // Función recursiva para intentar el pago en cada cuenta hasta que alguna tenga fondos suficientes
-                    return tryPaymentOnAccounts(accountsToTry, request.getAmount(), 0)
+                    // Intentar el pago en cada cuenta hasta que alguna tenga fondos suficientes
+                    AtomicInteger accountsTried = new AtomicInteger();
+                    Mono<String> payment = parallelBalanceProbe
+                            ? tryPaymentOnAccountsInParallel(accountsToTry, request.getAmount(), accountsTried)
+                            : tryPaymentOnAccounts(accountsToTry, request.getAmount(), 0, accountsTried);
+
+                    return payment
+                            .doFinally(signal -> recordAccountsTried(accountsTried.get()))
                             .flatMap(successfulAccountId -> {
-                                // Crear la transacción con la cuenta que fue exitosa
-                                return transactionService.createDebitCardTransaction(
-                                        TransactionService.DebitCardTransactionRequest.builder()
-                                                .debitCardId(debitCard.getId())
-                                                .accountId(successfulAccountId)
-                                                .amount(request.getAmount())
-                                                .description(request.getDescription())
-                                                .customerId(request.getCustomerId())
-                                                .build());
+                                // Registrar la transacción con la cuenta que fue exitosa
+                                Mono<TransactionDto> transaction = outboxEnabled
+                                        ? enqueueTransaction(debitCard.getId(), successfulAccountId, request)
+                                        : transactionService.createDebitCardTransaction(
+                                                TransactionService.DebitCardTransactionRequest.builder()
+                                                        .debitCardId(debitCard.getId())
+                                                        .accountId(successfulAccountId)
+                                                        .amount(request.getAmount())
+                                                        .description(request.getDescription())
+                                                        .customerId(request.getCustomerId())
+                                                        .build());
+                                return transaction
+                                        .doOnNext(created -> recentMovementStore.record(debitCard.getId(), created));
                             });
                 });
     }
 
+    /**
+     * Guarda la transacción de un pago ya debitado en el outbox local y la devuelve de inmediato;
+     * TransactionOutboxPublisher la registra luego en el servicio de transacciones.
+     * Si no se puede guardar, se revierte el débito para no perder el dinero sin registro.
+     *
+     * @param debitCardId ID de la tarjeta
+     * @param accountId ID de la cuenta debitada
+     * @param request Datos de la operación
+     * @return Mono con la transacción, identificada con el ID de la entrada del outbox
+     */
+    private Mono<TransactionDto> enqueueTransaction(String debitCardId, String accountId,
+                                                    DebitCardOperationRequest request) {
+        LocalDateTime now = LocalDateTime.now();
+        TransactionOutboxEntry entry = TransactionOutboxEntry.builder()
+                .id(new ObjectId().toHexString())
+                .debitCardId(debitCardId)
+                .accountId(accountId)
+                .customerId(request.getCustomerId())
+                .amount(request.getAmount())
+                .description(request.getDescription())
+                .status(OutboxStatus.PENDING)
+                .attempts(0)
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build();
+
+        return transactionOutboxRepository.insert(entry)
+                // El ID real lo asigna el servicio de transacciones al publicar; se guarda en la entrada
+                .map(saved -> TransactionDto.builder()
+                        .reference(saved.getId())
+                        .accountId(accountId)
+                        .debitCardId(debitCardId)
+                        .customerId(request.getCustomerId())
+                        .amount(request.getAmount())
+                        .description(request.getDescription())
+                        .transactionDate(now)
+                        .type(TransactionType.PAYMENT)
+                        .build())
+                .onErrorResume(e -> {
+                    log.error("Error writing transaction outbox entry, reverting debit on account {}: {}",
+                            accountId, e.getMessage());
+                    return accountService.updateBalance(accountId, request.getAmount())
+                            .then(Mono.<TransactionDto>error(e));
+                });
+    }
+
+    /**
+     * Ejecuta la operación en una suscripción propia que la cancelación del llamador no interrumpe.
+     *
+     * @param operation Operación a ejecutar
+     * @param <T> Tipo del resultado
+     * @return Mono con el resultado de la operación
+     */
+    private static <T> Mono<T> detached(Mono<T> operation) {
+        return Mono.defer(() -> {
+            Sinks.One<T> result = Sinks.one();
+            operation.subscribe(result::tryEmitValue, result::tryEmitError, result::tryEmitEmpty);
+            return result.asMono();
+        });
+    }
+
     /**
      * Intenta realizar un pago en las cuentas asociadas a una tarjeta de débito,
      * en el orden en que se encuentran.
@@ -288,9 +588,11 @@ public class DebitCardServiceImpl implements DebitCardService {
      * @param accountIds Lista de IDs de cuentas a intentar
      * @param amount Monto del pago
      * @param currentIndex Índice actual en la lista de cuentas
+     * @param accountsTried Contador de cuentas en las que se intentó el retiro
      * @return Mono con el ID de la cuenta donde se realizó el pago exitosamente
      */
-    private Mono<String> tryPaymentOnAccounts(List<String> accountIds, BigDecimal amount, int currentIndex) {
+    private Mono<String> tryPaymentOnAccounts(List<String> accountIds, BigDecimal amount, int currentIndex,
+                                              AtomicInteger accountsTried) {
         // Si ya no hay más cuentas, no hay fondos suficientes en ninguna
         if (currentIndex >= accountIds.size()) {
             return Mono.error(new InsufficientFundsException("Insufficient funds in all associated accounts"));
@@ -298,24 +600,64 @@ public class DebitCardServiceImpl implements DebitCardService {
 
         String accountId = accountIds.get(currentIndex);
 
-        // Intentar retirar de esta cuenta
-        return accountService.getBalance(accountId)
-                .flatMap(balance -> {
-                    if (balance.getBalance().compareTo(amount) >= 0) {
-                        // Esta cuenta tiene fondos suficientes, realizar retiro
-                        return accountService.updateBalance(accountId, amount.negate())
-                                .thenReturn(accountId);
+        // El saldo cacheado solo sirve para descartar cuentas sin fondos, nunca para aprobar el débito
+        if (accountService.isKnownInsufficient(accountId, amount)) {
+            return tryPaymentOnAccounts(accountIds, amount, currentIndex + 1, accountsTried);
+        }
+
+        // Intentar retirar de esta cuenta; el servicio de cuentas solo debita si el saldo alcanza
+        accountsTried.incrementAndGet();
+        return accountService.withdrawIfSufficient(accountId, amount)
+                .flatMap(result -> {
+                    if (result.isApproved()) {
+                        return Mono.just(accountId);
                     } else {
                         // Esta cuenta no tiene fondos suficientes, probar con la siguiente
-                        return tryPaymentOnAccounts(accountIds, amount, currentIndex + 1);
+                        return tryPaymentOnAccounts(accountIds, amount, currentIndex + 1, accountsTried);
                     }
                 });
     }
 
+    /**
+     * Consulta en paralelo (con concurrencia acotada) el saldo de todas las cuentas asociadas
+     * y debita la primera, en orden de prioridad, que cubra el monto. Si el saldo cambió entre
+     * la consulta y el retiro, se intenta con la siguiente candidata.
+     *
+     * @param accountIds Lista de IDs de cuentas a intentar, en orden de prioridad
+     * @param amount Monto del pago
+     * @param accountsTried Contador de cuentas en las que se intentó el retiro
+     * @return Mono con el ID de la cuenta donde se realizó el pago exitosamente
+     */
+    private Mono<String> tryPaymentOnAccountsInParallel(List<String> accountIds, BigDecimal amount,
+                                                        AtomicInteger accountsTried) {
+        return Flux.fromIterable(accountIds)
+                // La consulta previa solo filtra candidatas; el retiro condicional sigue decidiendo
+                .flatMapSequential(accountId -> accountService.getCachedBalance(accountId)
+                        .filter(balance -> balance.getBalance().compareTo(amount) >= 0)
+                        .map(balance -> accountId)
+                        // Una consulta fallida no prueba falta de fondos: la cuenta sigue como candidata
+                        // y el retiro condicional decide, propagando su error si el servicio sigue fallando
+                        .onErrorResume(e -> {
+                            log.warn("Error probing balance of account {}, trying the withdrawal anyway: {}",
+                                    accountId, e.getMessage());
+                            return Mono.just(accountId);
+                        }), balanceProbeConcurrency)
+                // flatMapSequential respeta el orden de prioridad; next() cancela las consultas pendientes
+                .concatMap(accountId -> {
+                    accountsTried.incrementAndGet();
+                    return accountService.withdrawIfSufficient(accountId, amount)
+                            .filter(WithdrawalResultDto::isApproved)
+                            .map(result -> accountId);
+                })
+                .next()
+                .switchIfEmpty(Mono.error(new InsufficientFundsException("Insufficient funds in all associated accounts")));
+    }
+
     // Método de fallback para manejo de errores con Circuit Breaker
     public Mono<TransactionDto> processPaymentFallback(DebitCardOperationRequest request, Throwable t) {
+        countFallback("processPayment", t);
         log.error("Fallback for process payment. Error: {}", t.getMessage());
-        return Mono.error(new RuntimeException("Service is currently unavailable. Please try again later."));
+        return Mono.error(fallbackError(t));
     }
 
     @Override
@@ -324,43 +666,85 @@ public class DebitCardServiceImpl implements DebitCardService {
     public Mono<CardMovementsReportDto> getLastMovements(String debitCardId, int limit) {
         log.info("Getting last {} movements for debit card id: {}", limit, debitCardId);
 
-        return debitCardRepository.findById(debitCardId)
+        return singleFlight.execute("lastMovements", debitCardId + ":" + limit,
+                () -> loadLastMovements(debitCardId, limit));
+    }
+
+    private Mono<CardMovementsReportDto> loadLastMovements(String debitCardId, int limit) {
+        return debitCardCache.findById(debitCardId)
                 .switchIfEmpty(Mono.error(new DebitCardNotFoundException("Debit card not found with id: " + debitCardId)))
                 .flatMap(debitCard -> {
                     // Obtener las últimas transacciones de la tarjeta de débito
-                    return transactionService.getDebitCardTransactions(debitCardId, limit)
-                            .collectList()
+                    return recentTransactions(debitCardId, limit)
                             .flatMap(transactions -> {
-                                // Convertir transacciones a movimientos
-                                Flux<MovementDto> movementFlux = Flux.fromIterable(transactions)
-                                        .flatMap(transaction -> {
-                                            // Para cada transacción, obtener el número de cuenta
-                                            return accountService.getAccountNumber(transaction.getAccountId())
-                                                    .map(accountNumber -> MovementDto.builder()
-                                                            .transactionId(transaction.getId())
-                                                            .transactionType(transaction.getType().toString())
-                                                            .transactionDate(transaction.getTransactionDate())
-                                                            .description(transaction.getDescription())
-                                                            .amount(transaction.getAmount())
-                                                            .accountNumber(accountNumber)
-                                                            .build());
-                                        });
+                                // Resolver los números de cuenta en lote, una vez por cuenta distinta
+                                List<String> accountIds = transactions.stream()
+                                        .map(TransactionDto::getAccountId)
+                                        .collect(Collectors.toList());
+
+                                return accountNumberResolver.resolveAll(accountIds)
+                                        .map(accountNumbers -> {
+                                            // Convertir transacciones a movimientos conservando el orden original
+                                            List<MovementDto> movements = transactions.stream()
+                                                    .map(transaction -> mapToMovement(transaction,
+                                                            accountNumbers.get(transaction.getAccountId())))
+                                                    .collect(Collectors.toList());
 
-                                return movementFlux.collectList()
-                                        .map(movements -> CardMovementsReportDto.builder()
-                                                .cardId(debitCard.getId())
-                                                .cardNumber(debitCard.getCardNumber())
-                                                .cardType("DEBIT_CARD")
-                                                .movements(movements)
-                                                .build());
+                                            return CardMovementsReportDto.builder()
+                                                    .cardId(debitCard.getId())
+                                                    .cardNumber(debitCard.getCardNumber())
+                                                    .cardType("DEBIT_CARD")
+                                                    .movements(movements)
+                                                    .build();
+                                        });
                             });
                 });
     }
 
+    @Override
+    @CircuitBreaker(name = "debitCardService", fallbackMethod = "streamLastMovementsFallback")
+    public Flux<MovementDto> streamLastMovements(String debitCardId, int limit) {
+        log.info("Streaming last {} movements for debit card id: {}", limit, debitCardId);
+
+        return debitCardCache.findById(debitCardId)
+                .switchIfEmpty(Mono.error(new DebitCardNotFoundException("Debit card not found with id: " + debitCardId)))
+                .flatMapMany(debitCard -> recentMovementStore.latest(debitCardId, limit)
+                        .flatMapIterable(transactions -> transactions)
+                        .switchIfEmpty(Flux.defer(() -> transactionService.getDebitCardTransactions(debitCardId, limit))))
+                // Enriquecer con concurrencia acotada, emitiendo cada movimiento en el orden original
+                // apenas se resuelve su número de cuenta
+                .flatMapSequential(transaction -> Mono.justOrEmpty(transaction.getAccountId())
+                        .flatMap(accountNumberResolver::resolve)
+                        .map(accountNumber -> mapToMovement(transaction, accountNumber))
+                        .switchIfEmpty(Mono.fromSupplier(() -> mapToMovement(transaction, null))),
+                        movementEnrichmentConcurrency);
+    }
+
+    /**
+     * Obtiene las últimas transacciones de una tarjeta desde el buffer local de movimientos recientes
+     * y, si no alcanza para el límite pedido, desde el servicio de transacciones.
+     * @param debitCardId ID de la tarjeta
+     * @param limit Número de transacciones
+     * @return Mono con la lista de transacciones
+     */
+    private Mono<List<TransactionDto>> recentTransactions(String debitCardId, int limit) {
+        return recentMovementStore.latest(debitCardId, limit)
+                .switchIfEmpty(Mono.defer(() -> transactionService.getDebitCardTransactions(debitCardId, limit)
+                        .collectList()));
+    }
+
+    // Método de fallback para manejo de errores con Circuit Breaker
+    public Flux<MovementDto> streamLastMovementsFallback(String debitCardId, int limit, Throwable t) {
+        countFallback("streamLastMovements", t);
+        log.error("Fallback for stream last movements. Error: {}", t.getMessage());
+        return Flux.error(fallbackError(t));
+    }
+
     // Método de fallback para manejo de errores con Circuit Breaker
     public Mono<CardMovementsReportDto> getLastMovementsFallback(String debitCardId, int limit, Throwable t) {
+        countFallback("getLastMovements", t);
         log.error("Fallback for get last movements. Error: {}", t.getMessage());
-        return Mono.error(new RuntimeException("Service is currently unavailable. Please try again later."));
+        return Mono.error(fallbackError(t));
     }
 
     @Override
@@ -369,39 +753,84 @@ public class DebitCardServiceImpl implements DebitCardService {
     public Mono<BalanceDto> getPrimaryAccountBalance(String debitCardId) {
         log.info("Getting primary account balance for debit card id: {}", debitCardId);
 
-        return debitCardRepository.findById(debitCardId)
+        // Las consultas concurrentes del saldo de la misma tarjeta comparten una sola llamada
+        return singleFlight.execute("primaryAccountBalance", debitCardId, () -> debitCardCache.findById(debitCardId)
                 .switchIfEmpty(Mono.error(new DebitCardNotFoundException("Debit card not found with id: " + debitCardId)))
                 .flatMap(debitCard -> {
                     // Obtener el saldo de la cuenta principal
-                    return accountService.getBalance(debitCard.getPrimaryAccountId());
-                });
+                    return accountService.getCachedBalance(debitCard.getPrimaryAccountId());
+                }));
     }
 
     // Método de fallback para manejo de errores con Circuit Breaker
     public Mono<BalanceDto> getPrimaryAccountBalanceFallback(String debitCardId, Throwable t) {
+        countFallback("getPrimaryAccountBalance", t);
         log.error("Fallback for get primary account balance. Error: {}", t.getMessage());
-        return Mono.error(new RuntimeException("Service is currently unavailable. Please try again later."));
+        return Mono.error(fallbackError(t));
+    }
+
+    @Override
+    public Mono<Void> evictCustomerOverdueDebts(String customerId) {
+        log.info("Evicting cached overdue debts of customer: {}", customerId);
+        return Mono.fromRunnable(() -> customerService.evictOverdueDebts(customerId));
     }
 
     /**
-     * Genera un número de tarjeta de débito aleatorio.
-     * @return String con el número de tarjeta
+     * Registra en cuántas cuentas se intentó el retiro de un pago.
+     * @param accountsTried Cantidad de cuentas
      */
-    private String generateCardNumber() {
-        // Formato: XXXX-XXXX-XXXX-XXXX
-        return String.format("4%03d-%04d-%04d-%04d",
-                new Random().nextInt(1000),
-                new Random().nextInt(10000),
-                new Random().nextInt(10000),
-                new Random().nextInt(10000));
+    private void recordAccountsTried(int accountsTried) {
+        DistributionSummary.builder("debitcard.payment.accounts.tried")
+                .description("Cuentas en las que se intentó el retiro por pago")
+                .serviceLevelObjectives(1, 2, 3, 5, 8)
+                .register(meterRegistry)
+                .record(accountsTried);
     }
 
     /**
-     * Genera un código CVV aleatorio.
-     * @return String con el código CVV
+     * Obtiene el error que devuelve un fallback. Los rechazos por límite de concurrencia y los
+     * conflictos de idempotencia se propagan sin cambios para que el cliente reciba 503 o 409
+     * y pueda reintentar; el resto se informa como servicio no disponible.
+     * @param t Error original
+     * @return Error a devolver
      */
-    private String generateCVV() {
-        return String.format("%03d", new Random().nextInt(1000));
+    private Throwable fallbackError(Throwable t) {
+        if (t instanceof ConcurrencyLimitExceededException || t instanceof IdempotencyConflictException) {
+            return t;
+        }
+        return new RuntimeException("Service is currently unavailable. Please try again later.");
+    }
+
+    /**
+     * Cuenta la ejecución de un método de fallback.
+     * @param method Método protegido por el circuit breaker
+     * @param t Error que activó el fallback
+     */
+    private void countFallback(String method, Throwable t) {
+        Counter.builder("debitcard.fallbacks")
+                .description("Ejecuciones de métodos de fallback")
+                .tag("method", method)
+                .tag("exception", t.getClass().getSimpleName())
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Convierte una transacción a movimiento de tarjeta.
+     * @param transaction Transacción a convertir
+     * @param accountNumber Número de la cuenta afectada
+     * @return MovementDto
+     */
+    private MovementDto mapToMovement(TransactionDto transaction, String accountNumber) {
+        return MovementDto.builder()
+                .transactionId(transaction.getId())
+                .reference(transaction.getReference())
+                .transactionType(transaction.getType().toString())
+                .transactionDate(transaction.getTransactionDate())
+                .description(transaction.getDescription())
+                .amount(transaction.getAmount())
+                .accountNumber(accountNumber)
+                .build();
     }
 
     /**
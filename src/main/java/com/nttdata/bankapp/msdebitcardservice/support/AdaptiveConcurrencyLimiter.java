@@ -0,0 +1,113 @@
+package com.nttdata.bankapp.msdebitcardservice.support;
+
+import com.nttdata.bankapp.msdebitcardservice.exception.ConcurrencyLimitExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Límite de concurrencia adaptativo (AIMD guiado por latencia) para un servicio remoto.
+ * Mientras la latencia se mantiene cerca de la mínima observada, el límite crece de a uno por
+ * ventana de llamadas; ante errores o latencias por encima de la tolerancia, se reduce
+ * multiplicativamente. Las llamadas que exceden el límite fallan de inmediato.
+ */
+public class AdaptiveConcurrencyLimiter {
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final double backoffRatio;
+    private final int minRttResetSamples;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rejected;
+    private volatile double limit;
+    private long minRttNanos = Long.MAX_VALUE;
+    private int samplesSinceReset;
+
+    public AdaptiveConcurrencyLimiter(String name, MeterRegistry meterRegistry, int initialLimit, int minLimit,
+                                      int maxLimit, double latencyTolerance, double backoffRatio,
+                                      int minRttResetSamples) {
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+        this.backoffRatio = backoffRatio;
+        this.minRttResetSamples = minRttResetSamples;
+        this.limit = initialLimit;
+        Gauge.builder("client.concurrency.limit", this, limiter -> limiter.limit)
+                .description("Límite de concurrencia actual")
+                .tag("client", name)
+                .register(meterRegistry);
+        Gauge.builder("client.concurrency.in-flight", inFlight, AtomicInteger::get)
+                .description("Llamadas en curso")
+                .tag("client", name)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("client.concurrency.rejected")
+                .description("Llamadas rechazadas por el límite de concurrencia")
+                .tag("client", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ejecuta la llamada si hay capacidad disponible.
+     * @param call Proveedor de la llamada
+     * @param failed Indica si un resultado exitoso debe contarse como falla (p. ej. un 5xx)
+     * @param <T> Tipo del resultado
+     * @return Mono con el resultado, o error ConcurrencyLimitExceededException si se excede el límite
+     */
+    public <T> Mono<T> execute(Supplier<Mono<T>> call, Predicate<T> failed) {
+        return Mono.defer(() -> {
+            if (!tryAcquire()) {
+                rejected.increment();
+                return Mono.error(new ConcurrencyLimitExceededException(
+                        "Concurrency limit reached for " + name + ", try again later"));
+            }
+            long startedAt = System.nanoTime();
+            boolean[] dropped = new boolean[1];
+            return Mono.defer(call)
+                    .doOnNext(result -> dropped[0] = failed.test(result))
+                    .doFinally(signal -> {
+                        inFlight.decrementAndGet();
+                        // Las cancelaciones no dicen nada de la salud del servicio: solo liberan el permiso
+                        if (signal != SignalType.CANCEL) {
+                            onSample(System.nanoTime() - startedAt, dropped[0] || signal == SignalType.ON_ERROR);
+                        }
+                    });
+        });
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private synchronized void onSample(long rttNanos, boolean dropped) {
+        // La latencia mínima se vuelve a medir cada tanto para seguir cambios de infraestructura
+        if (++samplesSinceReset >= minRttResetSamples) {
+            samplesSinceReset = 0;
+            minRttNanos = rttNanos;
+        } else if (rttNanos < minRttNanos) {
+            minRttNanos = rttNanos;
+        }
+
+        if (dropped || rttNanos > minRttNanos * latencyTolerance) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (inFlight.get() * 2 >= limit) {
+            // Solo crece si el límite se está usando; suma uno por cada "limit" muestras
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+}
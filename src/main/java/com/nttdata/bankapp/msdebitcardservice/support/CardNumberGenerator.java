@@ -0,0 +1,120 @@
+package com.nttdata.bankapp.msdebitcardservice.support;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+
+/**
+ * Generador de números de tarjeta válidos según Luhn y de códigos CVV.
+ * Usa una única fuente aleatoria segura y genera los candidatos por bloques,
+ * descartando los que un filtro de Bloom de números emitidos marca como posibles duplicados.
+ * El filtro se alimenta desde CardNumberRegistry con los números existentes y crece con ellos.
+ * El filtro solo evita colisiones probables: si descarta demasiados candidatos, se entregan igual
+ * y el índice único de Mongo, con el reintento ante DuplicateKeyException, decide.
+ */
+@Component
+public class CardNumberGenerator {
+    private static final int MAX_ATTEMPTS_PER_SLOT = 16;
+
+    private final SecureRandom random = new SecureRandom();
+    private final ScalableBloomFilter issuedNumbers;
+    private final Counter rejectedCandidates;
+    private final Counter unfilteredCandidates;
+    private final long prefixBase;
+    private final long accountRange;
+    private final long[] block;
+    private int cursor;
+    private int filled;
+
+    public CardNumberGenerator(MeterRegistry meterRegistry,
+                               @Value("${app.card.bin-prefix:4}") String binPrefix,
+                               @Value("${app.card.block-size:256}") int blockSize,
+                               @Value("${app.card.issued-filter.initial-capacity:1000000}") long initialCapacity,
+                               @Value("${app.card.issued-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        if (!binPrefix.matches("\\d{1,8}")) {
+            throw new IllegalArgumentException("BIN prefix must have between 1 and 8 digits: " + binPrefix);
+        }
+        this.issuedNumbers = new ScalableBloomFilter(initialCapacity, falsePositiveRate);
+        this.block = new long[blockSize];
+        // Dígitos aleatorios = 16 - prefijo - dígito verificador
+        int accountDigits = CardNumbers.DIGITS - binPrefix.length() - 1;
+        this.accountRange = pow10(accountDigits);
+        this.prefixBase = Long.parseLong(binPrefix) * accountRange;
+        this.rejectedCandidates = Counter.builder("card.number.candidates.rejected")
+                .description("Candidatos descartados por posible colisión con números emitidos")
+                .register(meterRegistry);
+        this.unfilteredCandidates = Counter.builder("card.number.candidates.unfiltered")
+                .description("Candidatos entregados sin pasar el filtro por haber agotado los intentos")
+                .register(meterRegistry);
+        Gauge.builder("card.number.issued.filter.layers", issuedNumbers, ScalableBloomFilter::layers)
+                .description("Capas del filtro de números emitidos")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Marca un número como emitido para no volver a proponerlo.
+     * @param cardNumber Número de tarjeta de 16 dígitos
+     */
+    public void markIssued(long cardNumber) {
+        issuedNumbers.put(cardNumber);
+    }
+
+    /**
+     * Obtiene un número de tarjeta nuevo con formato XXXX-XXXX-XXXX-XXXX.
+     * @return String con el número de tarjeta
+     */
+    public synchronized String nextCardNumber() {
+        if (cursor == filled) {
+            refill();
+        }
+        return CardNumbers.format(block[cursor++]);
+    }
+
+    /**
+     * Obtiene un código CVV aleatorio de 3 dígitos.
+     * @return String con el código CVV
+     */
+    public String nextCvv() {
+        int cvv = random.nextInt(1000);
+        return new String(new char[] {
+                (char) ('0' + cvv / 100),
+                (char) ('0' + cvv / 10 % 10),
+                (char) ('0' + cvv % 10)
+        });
+    }
+
+    private void refill() {
+        cursor = 0;
+        filled = 0;
+        int attempts = 0;
+        int maxAttempts = block.length * MAX_ATTEMPTS_PER_SLOT;
+        while (filled < block.length) {
+            attempts++;
+            long payload = prefixBase + (random.nextLong() >>> 1) % accountRange;
+            long candidate = payload * 10 + CardNumbers.luhnCheckDigit(payload);
+            if (issuedNumbers.mightContain(candidate)) {
+                if (attempts <= maxAttempts) {
+                    rejectedCandidates.increment();
+                    continue;
+                }
+                // Un falso positivo no debe impedir la emisión: el índice único detecta un duplicado real
+                unfilteredCandidates.increment();
+            }
+            // Se marca al entregarlo para que dos emisiones en curso no reciban el mismo número
+            issuedNumbers.put(candidate);
+            block[filled++] = candidate;
+        }
+    }
+
+    private static long pow10(int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= 10;
+        }
+        return result;
+    }
+}
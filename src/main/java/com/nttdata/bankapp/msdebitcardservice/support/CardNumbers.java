@@ -0,0 +1,85 @@
+package com.nttdata.bankapp.msdebitcardservice.support;
+
+/**
+ * Utilidades para números de tarjeta con formato XXXX-XXXX-XXXX-XXXX, representados
+ * internamente como un long de 16 dígitos para evitar asignaciones.
+ */
+public final class CardNumbers {
+    public static final int DIGITS = 16;
+    public static final long INVALID = -1L;
+
+    private static final int FORMATTED_LENGTH = 19;
+
+    private CardNumbers() {
+    }
+
+    /**
+     * Convierte un número con formato XXXX-XXXX-XXXX-XXXX (o 16 dígitos seguidos) a long.
+     * @param cardNumber Número de tarjeta
+     * @return long con el número, o INVALID si el formato no es válido
+     */
+    public static long parse(String cardNumber) {
+        if (cardNumber == null) {
+            return INVALID;
+        }
+        int length = cardNumber.length();
+        if (length != DIGITS && length != FORMATTED_LENGTH) {
+            return INVALID;
+        }
+        long value = 0;
+        int digits = 0;
+        for (int i = 0; i < length; i++) {
+            char c = cardNumber.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                digits++;
+            } else if (c != '-' || length != FORMATTED_LENGTH || i % 5 != 4) {
+                return INVALID;
+            }
+        }
+        return digits == DIGITS ? value : INVALID;
+    }
+
+    /**
+     * Da formato XXXX-XXXX-XXXX-XXXX a un número de 16 dígitos.
+     * @param cardNumber Número de tarjeta
+     * @return String con formato
+     */
+    public static String format(long cardNumber) {
+        char[] chars = new char[FORMATTED_LENGTH];
+        long remaining = cardNumber;
+        for (int i = FORMATTED_LENGTH - 1; i >= 0; i--) {
+            if (i % 5 == 4) {
+                chars[i] = '-';
+            } else {
+                chars[i] = (char) ('0' + (remaining % 10));
+                remaining /= 10;
+            }
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Calcula el dígito verificador de Luhn para un número sin dígito verificador.
+     * @param payload Número sin dígito verificador
+     * @return Dígito verificador (0-9)
+     */
+    public static int luhnCheckDigit(long payload) {
+        int sum = 0;
+        boolean doubleDigit = true;
+        long remaining = payload;
+        while (remaining > 0) {
+            int digit = (int) (remaining % 10);
+            if (doubleDigit) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubleDigit = !doubleDigit;
+            remaining /= 10;
+        }
+        return (10 - sum % 10) % 10;
+    }
+}
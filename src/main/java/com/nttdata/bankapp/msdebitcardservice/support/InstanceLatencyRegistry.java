@@ -0,0 +1,107 @@
+package com.nttdata.bankapp.msdebitcardservice.support;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Estadísticas por instancia remota (host:puerto) compartidas por todos los clientes:
+ * latencia como peak-EWMA y solicitudes en curso. El costo de una instancia es su latencia
+ * estimada multiplicada por las solicitudes pendientes, de modo que las instancias lentas
+ * o saturadas reciben menos tráfico. Una instancia con solicitudes en curso pero sin ninguna
+ * respuesta medida cuesta como una falla, para no seguir enviándole tráfico mientras cuelga.
+ */
+public class InstanceLatencyRegistry {
+    private final Map<String, InstanceStats> stats = new ConcurrentHashMap<>();
+    private final double decayNanos;
+    private final long errorPenaltyNanos;
+
+    public InstanceLatencyRegistry(Duration decayTime, Duration errorPenalty) {
+        this.decayNanos = decayTime.toNanos();
+        this.errorPenaltyNanos = errorPenalty.toNanos();
+    }
+
+    /**
+     * Registra el inicio de una solicitud a la instancia.
+     * @param instance Instancia con formato host:puerto
+     */
+    public void onStart(String instance) {
+        statsFor(instance).outstanding.incrementAndGet();
+    }
+
+    /**
+     * Registra el fin de una solicitud a la instancia.
+     * @param instance Instancia con formato host:puerto
+     * @param latencyNanos Latencia observada
+     * @param failed Si la solicitud falló; las fallas cuentan al menos como la penalización configurada
+     */
+    public void onComplete(String instance, long latencyNanos, boolean failed) {
+        InstanceStats instanceStats = statsFor(instance);
+        instanceStats.outstanding.decrementAndGet();
+        instanceStats.observe(failed ? Math.max(latencyNanos, errorPenaltyNanos) : latencyNanos, decayNanos);
+    }
+
+    /**
+     * Registra una solicitud cancelada, que solo deja de estar pendiente.
+     * @param instance Instancia con formato host:puerto
+     */
+    public void onCancel(String instance) {
+        statsFor(instance).outstanding.decrementAndGet();
+    }
+
+    /**
+     * Obtiene el costo estimado de enviar una solicitud a la instancia.
+     * @param instance Instancia con formato host:puerto
+     * @return Costo relativo; menor es mejor
+     */
+    public double cost(String instance) {
+        InstanceStats instanceStats = stats.get(instance);
+        if (instanceStats == null) {
+            // Instancia sin historial: se prefiere para empezar a medirla
+            return 0;
+        }
+        int outstanding = instanceStats.outstanding.get();
+        double latency = instanceStats.latency();
+        if (!instanceStats.sampled() && outstanding > 0) {
+            latency = errorPenaltyNanos;
+        }
+        return latency * (outstanding + 1);
+    }
+
+    private InstanceStats statsFor(String instance) {
+        return stats.computeIfAbsent(instance, key -> new InstanceStats());
+    }
+
+    /**
+     * Latencia peak-EWMA de una instancia: sube de inmediato ante un pico y, con cada
+     * nueva muestra, decae exponencialmente según el tiempo transcurrido desde la anterior.
+     * Sin muestras la estimación no cambia: una instancia que dejó de responder no parece más rápida.
+     */
+    private static final class InstanceStats {
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private double ewmaNanos;
+        private long updatedAt;
+        private boolean sampled;
+
+        synchronized void observe(long latencyNanos, double decayNanos) {
+            long now = System.nanoTime();
+            if (!sampled || latencyNanos > ewmaNanos) {
+                ewmaNanos = latencyNanos;
+            } else {
+                double weight = Math.exp(-(now - updatedAt) / decayNanos);
+                ewmaNanos = ewmaNanos * weight + latencyNanos * (1 - weight);
+            }
+            updatedAt = now;
+            sampled = true;
+        }
+
+        synchronized double latency() {
+            return ewmaNanos;
+        }
+
+        synchronized boolean sampled() {
+            return sampled;
+        }
+    }
+}
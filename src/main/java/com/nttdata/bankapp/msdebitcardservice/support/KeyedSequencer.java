@@ -0,0 +1,168 @@
+package com.nttdata.bankapp.msdebitcardservice.support;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Ejecuta tareas reactivas en orden por clave, con una cola por clave que se descarta
+ * al vaciarse. Las tareas de una misma clave se ejecutan una tras otra; las de claves
+ * distintas corren en paralelo. No bloquea hilos: cada cola se drena en un bucle
+ * protegido por un contador de trabajo pendiente, sin recursión entre tareas.
+ */
+public class KeyedSequencer {
+    private final Map<String, KeyQueue> queues = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Timer waitTimer;
+
+    public KeyedSequencer(String name, MeterRegistry meterRegistry) {
+        Gauge.builder("sequencer.queue.depth", pending, AtomicInteger::get)
+                .description("Tareas en espera o en ejecución")
+                .tag("name", name)
+                .register(meterRegistry);
+        Gauge.builder("sequencer.keys", queues, Map::size)
+                .description("Claves con tareas en espera o en ejecución")
+                .tag("name", name)
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("sequencer.wait")
+                .description("Tiempo de espera en cola antes de ejecutar la tarea")
+                .tag("name", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Encola una tarea para la clave indicada. La tarea se crea y se suscribe
+     * solo cuando terminan las tareas previas de la misma clave.
+     * Si el llamador cancela antes de que la tarea empiece, la tarea se descarta; si ya empezó,
+     * sigue hasta terminar y conserva la clave, para que la siguiente no corra en paralelo con ella.
+     * @param key Clave de ordenamiento
+     * @param task Proveedor de la tarea
+     * @param <T> Tipo del resultado
+     * @return Mono con el resultado de la tarea
+     */
+    public <T> Mono<T> submit(String key, Supplier<Mono<T>> task) {
+        return Mono.create(sink -> {
+            long enqueuedAt = System.nanoTime();
+            AtomicBoolean cancelled = new AtomicBoolean();
+            sink.onCancel(() -> cancelled.set(true));
+
+            enqueue(key, done -> {
+                waitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+                if (cancelled.get()) {
+                    done.run();
+                    return;
+                }
+                Mono<T> source;
+                try {
+                    source = task.get();
+                } catch (RuntimeException e) {
+                    done.run();
+                    sink.error(e);
+                    return;
+                }
+                // Suscripción propia: la cancelación del llamador no interrumpe la tarea en curso
+                source.doFinally(signal -> done.run())
+                        .subscribe(sink::success, sink::error, sink::success);
+            });
+        });
+    }
+
+    private void enqueue(String key, Consumer<Runnable> task) {
+        pending.incrementAndGet();
+        while (true) {
+            KeyQueue queue = queues.computeIfAbsent(key, KeyQueue::new);
+            if (queue.offer(task)) {
+                queue.drain();
+                return;
+            }
+            // La cola se cerró al vaciarse: quitarla si sigue en el mapa y crear una nueva
+            queues.remove(key, queue);
+        }
+    }
+
+    /**
+     * Cola de tareas de una clave; ejecuta una tarea a la vez. Al quedar vacía y sin
+     * tarea en curso se cierra y se quita del mapa, así que no rechaza tareas ya aceptadas.
+     */
+    private final class KeyQueue {
+        private final String key;
+        private final Queue<Consumer<Runnable>> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean active;
+        private boolean closed;
+
+        KeyQueue(String key) {
+            this.key = key;
+        }
+
+        synchronized boolean offer(Consumer<Runnable> task) {
+            if (closed) {
+                return false;
+            }
+            tasks.offer(task);
+            return true;
+        }
+
+        void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                while (!active) {
+                    Consumer<Runnable> task = tasks.poll();
+                    if (task == null) {
+                        if (close()) {
+                            queues.remove(key, this);
+                            break;
+                        }
+                        // Llegó una tarea entre poll() y close()
+                        continue;
+                    }
+                    active = true;
+                    // Si la tarea termina de forma síncrona, complete() solo marca trabajo pendiente
+                    // y este mismo bucle toma la siguiente
+                    task.accept(new Completion());
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private synchronized boolean close() {
+            if (!tasks.isEmpty()) {
+                return false;
+            }
+            closed = true;
+            return true;
+        }
+
+        private void complete() {
+            pending.decrementAndGet();
+            active = false;
+            drain();
+        }
+
+        /**
+         * Aviso de fin de una tarea; ignora llamadas repetidas.
+         */
+        private final class Completion extends AtomicBoolean implements Runnable {
+            @Override
+            public void run() {
+                if (compareAndSet(false, true)) {
+                    complete();
+                }
+            }
+        }
+    }
+}
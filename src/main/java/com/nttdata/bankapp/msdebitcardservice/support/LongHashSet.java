@@ -0,0 +1,104 @@
+package com.nttdata.bankapp.msdebitcardservice.support;
+
+/**
+ * Conjunto compacto de valores long con direccionamiento abierto y sondeo lineal.
+ * Evita el boxing de HashSet&lt;Long&gt;. No es seguro para uso concurrente.
+ */
+public class LongHashSet {
+    private static final long EMPTY = 0L;
+    private static final double MAX_LOAD_FACTOR = 0.5;
+
+    private long[] slots;
+    private int size;
+    private boolean containsEmptyKey;
+
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / MAX_LOAD_FACTOR)) - 1) << 1;
+        this.slots = new long[capacity];
+    }
+
+    public boolean contains(long value) {
+        if (value == EMPTY) {
+            return containsEmptyKey;
+        }
+        int mask = slots.length - 1;
+        for (int i = index(value, mask); slots[i] != EMPTY; i = (i + 1) & mask) {
+            if (slots[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            boolean added = !containsEmptyKey;
+            containsEmptyKey = true;
+            return added;
+        }
+        if (size + 1 > slots.length * MAX_LOAD_FACTOR) {
+            resize(slots.length << 1);
+        }
+        int mask = slots.length - 1;
+        int i = index(value, mask);
+        while (slots[i] != EMPTY) {
+            if (slots[i] == value) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        slots[i] = value;
+        size++;
+        return true;
+    }
+
+    public boolean remove(long value) {
+        if (value == EMPTY) {
+            boolean removed = containsEmptyKey;
+            containsEmptyKey = false;
+            return removed;
+        }
+        int mask = slots.length - 1;
+        int i = index(value, mask);
+        while (slots[i] != value) {
+            if (slots[i] == EMPTY) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        // Borrado con desplazamiento hacia atrás para no dejar marcas de borrado
+        int hole = i;
+        int next = (hole + 1) & mask;
+        while (slots[next] != EMPTY) {
+            int home = index(slots[next], mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                slots[hole] = slots[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        slots[hole] = EMPTY;
+        size--;
+        return true;
+    }
+
+    public int size() {
+        return size + (containsEmptyKey ? 1 : 0);
+    }
+
+    private void resize(int capacity) {
+        long[] previous = slots;
+        slots = new long[capacity];
+        size = 0;
+        for (long value : previous) {
+            if (value != EMPTY) {
+                add(value);
+            }
+        }
+    }
+
+    private static int index(long value, int mask) {
+        long hash = value * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,135 @@
+package com.nttdata.bankapp.msdebitcardservice.support;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Envía una segunda solicitud (hedge) para lecturas idempotentes cuando la primera no responde
+ * dentro del percentil configurado de la latencia reciente, y se queda con la primera respuesta.
+ * Un presupuesto de tokens limita la carga extra: cada llamada aporta una fracción de token
+ * y cada hedge consume uno.
+ * Publica client.hedge.calls y client.hedge.requests (fired/won) por cliente.
+ */
+public class RequestHedger {
+    private static final int RECOMPUTE_EVERY = 100;
+
+    private final boolean enabled;
+    private final double percentile;
+    private final Duration minDelay;
+    private final Duration maxDelay;
+    private final double budgetRatio;
+    private final double maxTokens;
+    private final long[] latencies;
+    private final int recomputeEvery;
+    private final Counter calls;
+    private final Counter hedgesFired;
+    private final Counter hedgesWon;
+    private int nextSample;
+    private int samples;
+    private double tokens;
+    private volatile Duration hedgeDelay;
+
+    public RequestHedger(String name, MeterRegistry meterRegistry, boolean enabled, double percentile,
+                         Duration minDelay, Duration maxDelay, double budgetRatio, double maxTokens,
+                         int windowSize) {
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelay = minDelay;
+        this.maxDelay = maxDelay;
+        this.budgetRatio = budgetRatio;
+        this.maxTokens = maxTokens;
+        this.latencies = new long[windowSize];
+        // Con una ventana menor al intervalo de recálculo el retardo nunca se actualizaría
+        this.recomputeEvery = Math.min(RECOMPUTE_EVERY, windowSize);
+        this.hedgeDelay = maxDelay;
+        this.calls = Counter.builder("client.hedge.calls")
+                .description("Llamadas elegibles para hedging")
+                .tag("client", name)
+                .register(meterRegistry);
+        this.hedgesFired = Counter.builder("client.hedge.requests")
+                .description("Solicitudes de hedge enviadas")
+                .tag("client", name)
+                .tag("result", "fired")
+                .register(meterRegistry);
+        this.hedgesWon = Counter.builder("client.hedge.requests")
+                .description("Solicitudes de hedge que respondieron antes que la original")
+                .tag("client", name)
+                .tag("result", "won")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ejecuta una lectura idempotente con hedging.
+     * @param call Proveedor de la llamada; se invoca una vez por solicitud enviada
+     * @param <T> Tipo del resultado
+     * @return Mono con la primera respuesta recibida
+     */
+    public <T> Mono<T> execute(Supplier<Mono<T>> call) {
+        if (!enabled) {
+            return Mono.defer(call);
+        }
+        return Mono.defer(() -> {
+            calls.increment();
+            depositToken();
+            long startedAt = System.nanoTime();
+
+            // Solo se mide cuando la solicitud original responde: si la cancela el hedge o el llamador
+            // no se sabe cuánto habría tardado, y medir el corte sesgaría el percentil hacia el retardo de hedge
+            Mono<T> primary = Mono.defer(call)
+                    .doOnSuccess(result -> recordLatency(System.nanoTime() - startedAt));
+
+            // Solo la solicitud original decide los errores: un hedge fallido o sin presupuesto nunca responde
+            Mono<T> hedge = Mono.delay(hedgeDelay)
+                    .flatMap(tick -> {
+                        if (!withdrawToken()) {
+                            return Mono.<T>never();
+                        }
+                        hedgesFired.increment();
+                        return Mono.defer(call)
+                                .doOnNext(result -> hedgesWon.increment())
+                                .onErrorResume(e -> Mono.never());
+                    });
+
+            return Mono.firstWithSignal(primary, hedge);
+        });
+    }
+
+    private synchronized void depositToken() {
+        tokens = Math.min(maxTokens, tokens + budgetRatio);
+    }
+
+    private synchronized boolean withdrawToken() {
+        if (tokens < 1.0) {
+            return false;
+        }
+        tokens -= 1.0;
+        return true;
+    }
+
+    private synchronized void recordLatency(long latencyNanos) {
+        latencies[nextSample] = latencyNanos;
+        nextSample = (nextSample + 1) % latencies.length;
+        if (samples < latencies.length) {
+            samples++;
+        }
+        // Hasta tener una ventana mínima se usa el retardo máximo
+        if (samples >= recomputeEvery && nextSample % recomputeEvery == 0) {
+            long[] window = Arrays.copyOf(latencies, samples);
+            Arrays.sort(window);
+            long delayNanos = window[(int) Math.min(samples - 1, Math.floor(percentile * samples))];
+            hedgeDelay = clamp(Duration.ofNanos(delayNanos));
+        }
+    }
+
+    private Duration clamp(Duration delay) {
+        if (delay.compareTo(minDelay) < 0) {
+            return minDelay;
+        }
+        return delay.compareTo(maxDelay) > 0 ? maxDelay : delay;
+    }
+}
@@ -0,0 +1,97 @@
+package com.nttdata.bankapp.msdebitcardservice.support;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Filtro de Bloom que crece a medida que se llena, seguro para uso concurrente.
+ * Agrega capas de capacidad doble cuando la actual alcanza su capacidad; cada capa nueva usa
+ * la mitad de la tasa de falsos positivos de la anterior, así que la tasa total nunca supera
+ * la configurada, sin importar cuántas claves se agreguen.
+ */
+public class ScalableBloomFilter {
+    private static final int GROWTH_FACTOR = 2;
+    private static final double TIGHTENING_RATIO = 0.5;
+
+    private final double falsePositiveRate;
+    private final AtomicLong size = new AtomicLong();
+    private volatile Layer[] layers;
+
+    public ScalableBloomFilter(long initialCapacity, double falsePositiveRate) {
+        this.falsePositiveRate = falsePositiveRate;
+        this.layers = new Layer[] {
+                new Layer(Math.max(1, initialCapacity), falsePositiveRate * (1 - TIGHTENING_RATIO))
+        };
+    }
+
+    /**
+     * Agrega una clave al filtro, creando una capa nueva si la actual está llena.
+     * @param key Clave
+     */
+    public void put(long key) {
+        Layer[] current = layers;
+        Layer last = current[current.length - 1];
+        if (last.count.incrementAndGet() > last.capacity) {
+            last = grow(current);
+        }
+        last.filter.put(key);
+        size.incrementAndGet();
+    }
+
+    /**
+     * Indica si la clave pudo haber sido agregada.
+     * @param key Clave
+     * @return false si la clave seguro no fue agregada
+     */
+    public boolean mightContain(long key) {
+        for (Layer layer : layers) {
+            if (layer.filter.mightContain(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Cantidad aproximada de claves agregadas.
+     * @return Claves agregadas
+     */
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * Cantidad de capas del filtro.
+     * @return Capas creadas
+     */
+    public int layers() {
+        return layers.length;
+    }
+
+    private synchronized Layer grow(Layer[] observed) {
+        Layer[] current = layers;
+        Layer last = current[current.length - 1];
+        // Otro hilo ya agregó una capa desde que se leyó el arreglo
+        if (current != observed && last.count.incrementAndGet() <= last.capacity) {
+            return last;
+        }
+        double layerRate = falsePositiveRate * (1 - TIGHTENING_RATIO) * Math.pow(TIGHTENING_RATIO, current.length);
+        Layer next = new Layer(last.capacity * GROWTH_FACTOR, layerRate);
+        next.count.incrementAndGet();
+        Layer[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = next;
+        layers = grown;
+        return next;
+    }
+
+    private static final class Layer {
+        private final BloomFilter filter;
+        private final long capacity;
+        private final AtomicLong count = new AtomicLong();
+
+        Layer(long capacity, double falsePositiveRate) {
+            this.filter = new BloomFilter(capacity, falsePositiveRate);
+            this.capacity = capacity;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.nttdata.bankapp.msdebitcardservice.support;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Agrupa lecturas idénticas concurrentes: mientras una llamada con la misma operación y clave
+ * está en curso, las siguientes se suscriben a ella en lugar de repetirla.
+ * Publica el contador singleflight.calls por operación y rol (leader/follower),
+ * cuyo cociente follower/total es la tasa de agrupamiento.
+ */
+@Component
+public class SingleFlight {
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Mono<?>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Counter> leaders = new ConcurrentHashMap<>();
+    private final Map<String, Counter> followers = new ConcurrentHashMap<>();
+
+    public SingleFlight(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Ejecuta la llamada o se une a una idéntica en curso.
+     * @param operation Nombre de la operación
+     * @param key Clave de la lectura dentro de la operación
+     * @param call Proveedor de la llamada
+     * @param <V> Tipo del resultado
+     * @return Mono compartido con el resultado
+     */
+    @SuppressWarnings("unchecked")
+    public <V> Mono<V> execute(String operation, String key, Supplier<Mono<V>> call) {
+        return Mono.defer(() -> {
+            String flightKey = operation + ":" + key;
+            boolean[] leader = new boolean[1];
+            Mono<V> flight = (Mono<V>) inFlight.computeIfAbsent(flightKey, k -> {
+                leader[0] = true;
+                return Mono.defer(call)
+                        .doFinally(signal -> inFlight.remove(k))
+                        .cache();
+            });
+            counter(leader[0] ? leaders : followers, operation, leader[0] ? "leader" : "follower").increment();
+            return flight;
+        });
+    }
+
+    private Counter counter(Map<String, Counter> counters, String operation, String role) {
+        return counters.computeIfAbsent(operation, op -> Counter.builder("singleflight.calls")
+                .description("Llamadas agrupadas por single-flight")
+                .tag("operation", op)
+                .tag("role", role)
+                .register(meterRegistry));
+    }
+}
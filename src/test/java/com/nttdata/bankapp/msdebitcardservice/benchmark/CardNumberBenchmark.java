@@ -0,0 +1,101 @@
+package com.nttdata.bankapp.msdebitcardservice.benchmark;
+
+import com.nttdata.bankapp.msdebitcardservice.support.CardNumberGenerator;
+import com.nttdata.bankapp.msdebitcardservice.support.CardNumbers;
+import com.nttdata.bankapp.msdebitcardservice.support.LongHashSet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Microbenchmarks de la emisión y búsqueda de números de tarjeta, con el filtro de números
+ * emitidos vacío y con un millón de números ya emitidos, para comprobar que la emisión
+ * masiva no se degrada a medida que se llena el espacio de números.
+ * Ejecutar con:
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=com.nttdata.bankapp.msdebitcardservice.benchmark.CardNumberBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardNumberBenchmark {
+    private static final int LOOKUP_KEYS = 1 << 16;
+
+    @Param({"0", "1000000"})
+    public int issued;
+
+    private CardNumberGenerator generator;
+    private LongHashSet registry;
+    private String[] lookupNumbers;
+    private int nextLookup;
+
+    @Setup
+    public void setUp() {
+        generator = new CardNumberGenerator(new SimpleMeterRegistry(), "4", 256, 1_000_000, 0.01);
+        registry = new LongHashSet(Math.max(16, issued));
+        Random random = new Random(1);
+        for (int i = 0; i < issued; i++) {
+            long cardNumber = CardNumbers.parse(generator.nextCardNumber());
+            registry.add(cardNumber);
+        }
+
+        // La mitad de las búsquedas son números existentes y la otra mitad números nuevos
+        lookupNumbers = new String[LOOKUP_KEYS];
+        for (int i = 0; i < LOOKUP_KEYS; i++) {
+            lookupNumbers[i] = i % 2 == 0
+                    ? generator.nextCardNumber()
+                    : CardNumbers.format(4_000_000_000_000_000L + (random.nextLong() >>> 1) % 1_000_000_000_000_000L);
+            if (i % 2 == 0) {
+                registry.add(CardNumbers.parse(lookupNumbers[i]));
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String nextCardNumber() {
+        return generator.nextCardNumber();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String nextCardNumberContended() {
+        return generator.nextCardNumber();
+    }
+
+    @Benchmark
+    public String nextCvv() {
+        return generator.nextCvv();
+    }
+
+    @Benchmark
+    public boolean registryLookup() {
+        String cardNumber = lookupNumbers[nextLookup++ & (LOOKUP_KEYS - 1)];
+        return registry.contains(CardNumbers.parse(cardNumber));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CardNumberBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
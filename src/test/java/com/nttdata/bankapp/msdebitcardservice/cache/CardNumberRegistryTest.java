@@ -0,0 +1,106 @@
+package com.nttdata.bankapp.msdebitcardservice.cache;
+
+import com.nttdata.bankapp.msdebitcardservice.model.DebitCard;
+import com.nttdata.bankapp.msdebitcardservice.repository.DebitCardRepository;
+import com.nttdata.bankapp.msdebitcardservice.support.CardNumberGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas del registro de números de tarjeta con el repositorio simulado.
+ */
+class CardNumberRegistryTest {
+    private static final String EXISTING = "4000-0000-0000-0002";
+    private static final String CREATED_ELSEWHERE = "4000-0000-0000-0010";
+    private static final String UNKNOWN = "4000-0000-0000-0028";
+
+    private DebitCardRepository debitCardRepository;
+    private Sinks.Many<String> inserts;
+    private Sinks.Many<DebitCard> catchUp;
+    private CardNumberRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        debitCardRepository = mock(DebitCardRepository.class);
+        inserts = Sinks.many().unicast().onBackpressureBuffer();
+        catchUp = Sinks.many().unicast().onBackpressureBuffer();
+        when(debitCardRepository.findAllCardNumbers()).thenReturn(Flux.just(card(EXISTING)));
+        when(debitCardRepository.watchInsertedCardNumbers(any(Instant.class))).thenReturn(inserts.asFlux());
+        when(debitCardRepository.findCardNumbersCreatedAfter(any(LocalDateTime.class))).thenReturn(catchUp.asFlux());
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        registry = new CardNumberRegistry(debitCardRepository,
+                new CardNumberGenerator(meterRegistry, "4", 16, 1_000, 0.01), meterRegistry, 1_000);
+        registry.load();
+    }
+
+    @AfterEach
+    void tearDown() {
+        registry.stop();
+    }
+
+    @Test
+    void rejectsMalformedNumbersAlways() {
+        assertFalse(registry.mightExist("not-a-card"));
+        assertFalse(registry.mightExist("4000-0000-00000-003"));
+    }
+
+    @Test
+    void queriesMongoForUnknownNumbersUntilCaughtUp() {
+        assertTrue(registry.mightExist(EXISTING));
+        assertTrue(registry.mightExist(UNKNOWN));
+
+        catchUp.tryEmitComplete();
+
+        assertFalse(registry.mightExist(UNKNOWN));
+    }
+
+    @Test
+    void learnsCardsCreatedByOtherInstances() {
+        catchUp.tryEmitComplete();
+        assertFalse(registry.mightExist(CREATED_ELSEWHERE));
+
+        inserts.tryEmitNext(CREATED_ELSEWHERE);
+
+        assertTrue(registry.mightExist(CREATED_ELSEWHERE));
+    }
+
+    @Test
+    void recoversCardsCreatedBeforeTheStreamStarted() {
+        catchUp.tryEmitNext(card(CREATED_ELSEWHERE));
+        catchUp.tryEmitComplete();
+
+        assertTrue(registry.mightExist(CREATED_ELSEWHERE));
+        assertFalse(registry.mightExist(UNKNOWN));
+    }
+
+    @Test
+    void stopsRejectingUnknownNumbersWhenTheStreamFails() {
+        catchUp.tryEmitComplete();
+        assertFalse(registry.mightExist(UNKNOWN));
+
+        inserts.tryEmitError(new IllegalStateException("change stream closed"));
+
+        assertTrue(registry.mightExist(UNKNOWN));
+        assertTrue(registry.mightExist(EXISTING));
+    }
+
+    private static DebitCard card(String cardNumber) {
+        return DebitCard.builder()
+                .cardNumber(cardNumber)
+                .build();
+    }
+}
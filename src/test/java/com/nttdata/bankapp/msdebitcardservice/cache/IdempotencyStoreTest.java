@@ -0,0 +1,182 @@
+package com.nttdata.bankapp.msdebitcardservice.cache;
+
+import com.nttdata.bankapp.msdebitcardservice.dto.TransactionDto;
+import com.nttdata.bankapp.msdebitcardservice.exception.IdempotencyConflictException;
+import com.nttdata.bankapp.msdebitcardservice.exception.InvalidOperationException;
+import com.nttdata.bankapp.msdebitcardservice.model.IdempotencyRecord;
+import com.nttdata.bankapp.msdebitcardservice.model.IdempotencyStatus;
+import com.nttdata.bankapp.msdebitcardservice.repository.IdempotencyRecordRepository;
+import com.nttdata.bankapp.msdebitcardservice.support.SingleFlight;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas del almacén de idempotencia: reserva de la clave, reproducción del resultado
+ * y espera de los duplicados.
+ */
+class IdempotencyStoreTest {
+    private static final String KEY = "key-1";
+    private static final String FINGERPRINT = "card-1|customer-1|100|";
+
+    private IdempotencyRecordRepository repository;
+    private IdempotencyStore store;
+    private AtomicInteger executions;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(IdempotencyRecordRepository.class);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        store = new IdempotencyStore(repository, new SingleFlight(meterRegistry), meterRegistry,
+                100, Duration.ofHours(24), Duration.ofMillis(10), Duration.ofMillis(50));
+        executions = new AtomicInteger();
+    }
+
+    @Test
+    void claimsKeyRunsPaymentOnceAndReplaysResult() {
+        when(repository.insert(any(IdempotencyRecord.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(repository.save(any(IdempotencyRecord.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        StepVerifier.create(store.execute(KEY, FINGERPRINT, this::payment))
+                .expectNext(transaction())
+                .verifyComplete();
+        StepVerifier.create(store.execute(KEY, FINGERPRINT, this::payment))
+                .expectNext(transaction())
+                .verifyComplete();
+
+        assertEquals(1, executions.get());
+        ArgumentCaptor<IdempotencyRecord> saved = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        verify(repository).save(saved.capture());
+        assertEquals(IdempotencyStatus.COMPLETED, saved.getValue().getStatus());
+        assertEquals(transaction(), saved.getValue().getTransaction());
+    }
+
+    @Test
+    void replaysResultStoredByAnotherInstance() {
+        when(repository.insert(any(IdempotencyRecord.class))).thenReturn(Mono.error(new DuplicateKeyException("duplicate")));
+        when(repository.findById(KEY)).thenReturn(Mono.just(record(IdempotencyStatus.COMPLETED, FINGERPRINT)));
+
+        StepVerifier.create(store.execute(KEY, FINGERPRINT, this::payment))
+                .expectNext(transaction())
+                .verifyComplete();
+
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void waitsForPendingClaimUntilItCompletes() {
+        when(repository.insert(any(IdempotencyRecord.class))).thenReturn(Mono.error(new DuplicateKeyException("duplicate")));
+        // Como las consultas de Spring Data, el Mono vuelve a consultar en cada suscripción
+        AtomicInteger polls = new AtomicInteger();
+        when(repository.findById(KEY)).thenReturn(Mono.fromSupplier(() -> polls.incrementAndGet() < 3
+                ? record(IdempotencyStatus.PENDING, FINGERPRINT)
+                : record(IdempotencyStatus.COMPLETED, FINGERPRINT)));
+
+        StepVerifier.create(store.execute(KEY, FINGERPRINT, this::payment))
+                .expectNext(transaction())
+                .verifyComplete();
+
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void rejectsDuplicateWhileClaimStaysPending() {
+        when(repository.insert(any(IdempotencyRecord.class))).thenReturn(Mono.error(new DuplicateKeyException("duplicate")));
+        when(repository.findById(KEY)).thenReturn(Mono.fromSupplier(() -> record(IdempotencyStatus.PENDING, FINGERPRINT)));
+
+        StepVerifier.create(store.execute(KEY, FINGERPRINT, this::payment))
+                .verifyError(IdempotencyConflictException.class);
+
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void rejectsKeyReusedWithDifferentRequest() {
+        when(repository.insert(any(IdempotencyRecord.class))).thenReturn(Mono.error(new DuplicateKeyException("duplicate")));
+        when(repository.findById(KEY)).thenReturn(Mono.just(record(IdempotencyStatus.PENDING, "other-request")));
+
+        StepVerifier.create(store.execute(KEY, FINGERPRINT, this::payment))
+                .verifyError(InvalidOperationException.class);
+
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void releasesKeyWhenPaymentFails() {
+        when(repository.insert(any(IdempotencyRecord.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(repository.deleteById(KEY)).thenReturn(Mono.empty());
+
+        StepVerifier.create(store.execute(KEY, FINGERPRINT, () -> Mono.error(new IllegalStateException("declined"))))
+                .verifyErrorMessage("declined");
+
+        verify(repository).deleteById(KEY);
+        verify(repository, never()).save(any(IdempotencyRecord.class));
+    }
+
+    @Test
+    void returnsPaymentEvenIfResultCannotBeStored() {
+        when(repository.insert(any(IdempotencyRecord.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(repository.save(any(IdempotencyRecord.class))).thenReturn(Mono.error(new IllegalStateException("mongo down")));
+
+        StepVerifier.create(store.execute(KEY, FINGERPRINT, this::payment))
+                .expectNext(transaction())
+                .verifyComplete();
+
+        // El débito ya ocurrió: la clave no se libera para que un reintento no vuelva a pagar
+        verify(repository, never()).deleteById(KEY);
+        verify(repository, times(1)).save(any(IdempotencyRecord.class));
+    }
+
+    @Test
+    void rejectsDuplicateWhenPreviousAttemptReleasedTheKey() {
+        when(repository.insert(any(IdempotencyRecord.class))).thenReturn(Mono.error(new DuplicateKeyException("duplicate")));
+        when(repository.findById(KEY)).thenReturn(Mono.empty());
+
+        StepVerifier.create(store.execute(KEY, FINGERPRINT, this::payment))
+                .verifyError(IdempotencyConflictException.class);
+
+        assertEquals(0, executions.get());
+    }
+
+    private Mono<TransactionDto> payment() {
+        return Mono.fromSupplier(() -> {
+            executions.incrementAndGet();
+            return transaction();
+        });
+    }
+
+    private static IdempotencyRecord record(IdempotencyStatus status, String fingerprint) {
+        return IdempotencyRecord.builder()
+                .key(KEY)
+                .requestFingerprint(fingerprint)
+                .status(status)
+                .transaction(status == IdempotencyStatus.COMPLETED ? transaction() : null)
+                .build();
+    }
+
+    private static TransactionDto transaction() {
+        return TransactionDto.builder()
+                .id("tx-1")
+                .debitCardId("card-1")
+                .accountId("acc-1")
+                .customerId("customer-1")
+                .amount(new BigDecimal("100"))
+                .build();
+    }
+}
@@ -0,0 +1,118 @@
+package com.nttdata.bankapp.msdebitcardservice.client;
+
+import com.nttdata.bankapp.msdebitcardservice.config.DownstreamWebClientFactory;
+import com.nttdata.bankapp.msdebitcardservice.dto.BalanceDto;
+import com.nttdata.bankapp.msdebitcardservice.support.RequestHedger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas del cliente de cuentas contra un servidor HTTP local que simula ms-account-service.
+ */
+class AccountServiceTest {
+    private MockWebServer accountServer;
+    private AccountService accountService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        accountServer = new MockWebServer();
+        accountServer.start();
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DownstreamWebClientFactory webClientFactory = mock(DownstreamWebClientFactory.class);
+        when(webClientFactory.create(anyString(), anyString()))
+                .thenReturn(WebClient.create(accountServer.url("/").toString()));
+        when(webClientFactory.createHedger(anyString()))
+                .thenReturn(new RequestHedger("account", meterRegistry, false, 0.95, Duration.ofMillis(10),
+                        Duration.ofMillis(500), 0.05, 10.0, 1000));
+
+        accountService = new AccountService(webClientFactory, meterRegistry,
+                1000, Duration.ofMinutes(10), 4, 1000, Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        accountServer.shutdown();
+    }
+
+    @Test
+    void withdrawIfSufficientApprovesAndReturnsNewBalance() throws InterruptedException {
+        accountServer.enqueue(json("{\"accountId\":\"acc-1\",\"balance\":40.00,\"currency\":\"PEN\"}"));
+
+        StepVerifier.create(accountService.withdrawIfSufficient("acc-1", new BigDecimal("60.00")))
+                .assertNext(result -> {
+                    assertTrue(result.isApproved());
+                    assertEquals(0, new BigDecimal("40.00").compareTo(result.getBalance().getBalance()));
+                })
+                .verifyComplete();
+
+        RecordedRequest request = accountServer.takeRequest(1, TimeUnit.SECONDS);
+        assertEquals("POST", request.getMethod());
+        assertEquals("/accounts/acc-1/conditional-withdrawal", request.getPath());
+        assertTrue(request.getBody().readUtf8().contains("\"amount\":60.00"));
+    }
+
+    @Test
+    void withdrawIfSufficientRejectsWhenFundsAreInsufficient() {
+        accountServer.enqueue(new MockResponse().setResponseCode(409));
+        accountServer.enqueue(new MockResponse().setResponseCode(422));
+
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(accountService.withdrawIfSufficient("acc-1", new BigDecimal("60.00")))
+                    .assertNext(result -> assertFalse(result.isApproved()))
+                    .verifyComplete();
+        }
+    }
+
+    @Test
+    void withdrawIfSufficientFailsOnServerError() {
+        accountServer.enqueue(new MockResponse().setResponseCode(500));
+
+        StepVerifier.create(accountService.withdrawIfSufficient("acc-1", new BigDecimal("60.00")))
+                .verifyError(WebClientResponseException.InternalServerError.class);
+    }
+
+    @Test
+    void approvedWithdrawalRefreshesCachedBalance() {
+        accountServer.enqueue(json("{\"accountId\":\"acc-1\",\"balance\":40.00}"));
+
+        StepVerifier.create(accountService.withdrawIfSufficient("acc-1", new BigDecimal("60.00")))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        // El saldo devuelto por el retiro se usa sin volver a consultar el servicio
+        StepVerifier.create(accountService.getCachedBalance("acc-1").map(BalanceDto::getBalance))
+                .assertNext(balance -> assertEquals(0, new BigDecimal("40.00").compareTo(balance)))
+                .verifyComplete();
+        assertEquals(1, accountServer.getRequestCount());
+        assertTrue(accountService.isKnownInsufficient("acc-1", new BigDecimal("50.00")));
+    }
+
+    private static MockResponse json(String body) {
+        return new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody(body);
+    }
+}
@@ -0,0 +1,80 @@
+package com.nttdata.bankapp.msdebitcardservice.client;
+
+import com.nttdata.bankapp.msdebitcardservice.config.DownstreamWebClientFactory;
+import com.nttdata.bankapp.msdebitcardservice.support.RequestHedger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas del cliente de clientes contra un servidor HTTP local que simula ms-customer-service.
+ */
+class CustomerServiceTest {
+    private MockWebServer customerServer;
+    private CustomerService customerService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        customerServer = new MockWebServer();
+        customerServer.start();
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DownstreamWebClientFactory webClientFactory = mock(DownstreamWebClientFactory.class);
+        when(webClientFactory.create(anyString(), anyString()))
+                .thenReturn(WebClient.create(customerServer.url("/").toString()));
+        when(webClientFactory.createHedger(anyString()))
+                .thenReturn(new RequestHedger("customer", meterRegistry, false, 0.95, Duration.ofMillis(10),
+                        Duration.ofMillis(500), 0.05, 10.0, 1000));
+
+        customerService = new CustomerService(webClientFactory, meterRegistry,
+                1000, Duration.ofHours(1), Duration.ofMinutes(1), Duration.ofSeconds(10));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        customerServer.shutdown();
+    }
+
+    @Test
+    void hasOverdueDebtsIsCachedUntilEvicted() {
+        customerServer.enqueue(json("true"));
+        customerServer.enqueue(json("false"));
+
+        StepVerifier.create(customerService.hasOverdueDebts("customer-1"))
+                .expectNext(true)
+                .verifyComplete();
+        StepVerifier.create(customerService.hasOverdueDebts("customer-1"))
+                .expectNext(true)
+                .verifyComplete();
+        assertEquals(1, customerServer.getRequestCount());
+
+        // El servicio de clientes avisa que la deuda se pagó
+        customerService.evictOverdueDebts("customer-1");
+
+        StepVerifier.create(customerService.hasOverdueDebts("customer-1"))
+                .expectNext(false)
+                .verifyComplete();
+        assertEquals(2, customerServer.getRequestCount());
+    }
+
+    private static MockResponse json(String body) {
+        return new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody(body);
+    }
+}
@@ -0,0 +1,122 @@
+package com.nttdata.bankapp.msdebitcardservice.repository;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.nttdata.bankapp.msdebitcardservice.model.DebitCard;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gt;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifica que las consultas frecuentes sobre tarjetas usen un índice y no recorran la colección.
+ * Requiere Docker; sin Docker la prueba se omite.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class DebitCardQueryPlanTest {
+
+    @Container
+    private static final MongoDBContainer MONGO = new MongoDBContainer(DockerImageName.parse("mongo:5.0"));
+
+    private static MongoClient mongoClient;
+    private static ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @BeforeAll
+    static void setUp() {
+        mongoClient = MongoClients.create(MONGO.getReplicaSetUrl());
+        reactiveMongoTemplate = new ReactiveMongoTemplate(mongoClient, "bankapp");
+
+        // Los mismos índices que crea MongoIndexConfig al iniciar la aplicación
+        MongoPersistentEntityIndexResolver indexResolver = new MongoPersistentEntityIndexResolver(new MongoMappingContext());
+        Flux.fromIterable(indexResolver.resolveIndexFor(DebitCard.class))
+                .concatMap(index -> reactiveMongoTemplate.indexOps(DebitCard.class).ensureIndex(index))
+                .blockLast();
+
+        List<DebitCard> debitCards = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            debitCards.add(DebitCard.builder()
+                    .cardNumber(String.format("4000-0000-0000-%04d", i))
+                    .customerId("customer-" + (i % 20))
+                    .primaryAccountId("account-" + i)
+                    .associatedAccountIds(List.of("account-" + i))
+                    .expirationDate(LocalDate.now().plusYears(4))
+                    .cvv("123")
+                    .active(i % 3 != 0)
+                    .createdAt(LocalDateTime.now().minusDays(i))
+                    .build());
+        }
+        reactiveMongoTemplate.insertAll(debitCards).blockLast();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        mongoClient.close();
+    }
+
+    @Test
+    void findByCustomerIdUsesCompoundIndex() {
+        assertUsesIndex(eq("customerId", "customer-1"));
+    }
+
+    @Test
+    void findActiveCardsOfCustomerUsesCompoundIndex() {
+        assertUsesIndex(and(eq("customerId", "customer-1"), eq("active", true),
+                gt("expirationDate", LocalDate.now())));
+    }
+
+    @Test
+    void findByCardNumberUsesUniqueIndex() {
+        assertUsesIndex(eq("cardNumber", "4000-0000-0000-0042"));
+    }
+
+    @Test
+    void findCardNumbersCreatedAfterUsesIndex() {
+        assertUsesIndex(gt("createdAt", LocalDateTime.now().minusDays(1)));
+    }
+
+    private static void assertUsesIndex(Bson filter) {
+        Document explain = reactiveMongoTemplate.getCollection("debitCards")
+                .flatMap(collection -> Mono.from(collection.find(filter).explain()))
+                .block();
+        List<String> stages = new ArrayList<>();
+        collectStages(explain.get("queryPlanner", Document.class).get("winningPlan"), stages);
+
+        assertTrue(stages.contains("IXSCAN"), "Expected an index scan but the plan was " + stages);
+        assertFalse(stages.contains("COLLSCAN"), "Unexpected collection scan in plan " + stages);
+    }
+
+    // Recorre el plan completo: según la versión de Mongo el IXSCAN puede estar anidado en inputStage o queryPlan
+    private static void collectStages(Object node, List<String> stages) {
+        if (node instanceof Document) {
+            Document document = (Document) node;
+            Object stage = document.get("stage");
+            if (stage instanceof String) {
+                stages.add((String) stage);
+            }
+            document.values().forEach(value -> collectStages(value, stages));
+        } else if (node instanceof List) {
+            ((List<?>) node).forEach(value -> collectStages(value, stages));
+        }
+    }
+}
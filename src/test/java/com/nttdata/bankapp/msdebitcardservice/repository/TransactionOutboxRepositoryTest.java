@@ -0,0 +1,166 @@
+package com.nttdata.bankapp.msdebitcardservice.repository;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.nttdata.bankapp.msdebitcardservice.model.OutboxStatus;
+import com.nttdata.bankapp.msdebitcardservice.model.TransactionOutboxEntry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifica la toma de lotes del outbox contra un Mongo real: concesiones exclusivas,
+ * expiración de la concesión y actualizaciones condicionadas al token.
+ * Requiere Docker; sin Docker la prueba se omite.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class TransactionOutboxRepositoryTest {
+
+    @Container
+    private static final MongoDBContainer MONGO = new MongoDBContainer(DockerImageName.parse("mongo:5.0"));
+
+    private static MongoClient mongoClient;
+    private static ReactiveMongoTemplate reactiveMongoTemplate;
+    private static TransactionOutboxRepositoryCustomImpl repository;
+
+    @BeforeAll
+    static void setUp() {
+        mongoClient = MongoClients.create(MONGO.getReplicaSetUrl());
+        reactiveMongoTemplate = new ReactiveMongoTemplate(mongoClient, "bankapp");
+        repository = new TransactionOutboxRepositoryCustomImpl(reactiveMongoTemplate);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        mongoClient.close();
+    }
+
+    @BeforeEach
+    void clean() {
+        reactiveMongoTemplate.remove(TransactionOutboxEntry.class).all().block();
+    }
+
+    @Test
+    void claimsOnlyDueEntriesAndCountsTheAttempt() {
+        LocalDateTime now = LocalDateTime.now();
+        insert(pending("due", now.minusSeconds(1)), pending("later", now.plusMinutes(5)));
+
+        List<TransactionOutboxEntry> claimed = repository.claimBatch(10, Duration.ofSeconds(30)).collectList().block();
+
+        assertEquals(1, claimed.size());
+        TransactionOutboxEntry entry = claimed.get(0);
+        assertEquals("due", entry.getId());
+        assertEquals(OutboxStatus.PUBLISHING, entry.getStatus());
+        assertEquals(1, entry.getAttempts());
+        assertTrue(entry.getClaimToken() != null && entry.getLeaseUntil().isAfter(now));
+    }
+
+    @Test
+    void concurrentClaimsNeverShareAnEntry() {
+        LocalDateTime due = LocalDateTime.now().minusSeconds(1);
+        for (int i = 0; i < 50; i++) {
+            insert(pending("entry-" + i, due));
+        }
+
+        // Varias pasadas concurrentes por ronda, hasta que no queden entradas por tomar
+        List<TransactionOutboxEntry> claimed = Flux.range(0, 8)
+                .flatMap(i -> repository.claimBatch(10, Duration.ofSeconds(30)))
+                .collectList()
+                .repeat()
+                .takeUntil(List::isEmpty)
+                .flatMapIterable(batch -> batch)
+                .collectList()
+                .block();
+
+        Set<String> ids = claimed.stream().map(TransactionOutboxEntry::getId).collect(Collectors.toSet());
+        assertEquals(claimed.size(), ids.size());
+        assertEquals(50, ids.size());
+    }
+
+    @Test
+    void retakesEntryOnceTheLeaseExpires() throws InterruptedException {
+        insert(pending("entry-1", LocalDateTime.now().minusSeconds(1)));
+
+        TransactionOutboxEntry first = repository.claimBatch(10, Duration.ofMillis(200)).blockFirst();
+        assertEquals(0, repository.claimBatch(10, Duration.ofMillis(200)).count().block());
+
+        Thread.sleep(300);
+        TransactionOutboxEntry second = repository.claimBatch(10, Duration.ofSeconds(30)).blockFirst();
+
+        assertEquals("entry-1", second.getId());
+        assertEquals(2, second.getAttempts());
+        assertTrue(!first.getClaimToken().equals(second.getClaimToken()));
+
+        // El dueño anterior perdió la concesión: su resultado no pisa al del nuevo dueño
+        repository.markPublished("entry-1", first.getClaimToken(), "tx-stale").block();
+        assertEquals(OutboxStatus.PUBLISHING, find("entry-1").getStatus());
+
+        repository.markPublished("entry-1", second.getClaimToken(), "tx-1").block();
+        TransactionOutboxEntry published = find("entry-1");
+        assertEquals(OutboxStatus.PUBLISHED, published.getStatus());
+        assertEquals("tx-1", published.getTransactionId());
+    }
+
+    @Test
+    void rescheduledEntryIsNotClaimedBeforeItsNextAttempt() {
+        insert(pending("entry-1", LocalDateTime.now().minusSeconds(1)));
+        TransactionOutboxEntry claimed = repository.claimBatch(10, Duration.ofSeconds(30)).blockFirst();
+
+        repository.reschedule("entry-1", claimed.getClaimToken(), LocalDateTime.now().plusMinutes(1), "timeout").block();
+
+        assertEquals(0, repository.claimBatch(10, Duration.ofSeconds(30)).count().block());
+        TransactionOutboxEntry rescheduled = find("entry-1");
+        assertEquals(OutboxStatus.PENDING, rescheduled.getStatus());
+        assertEquals("timeout", rescheduled.getLastError());
+    }
+
+    @Test
+    void failedEntryIsNeverClaimedAgain() {
+        insert(pending("entry-1", LocalDateTime.now().minusSeconds(1)));
+        TransactionOutboxEntry claimed = repository.claimBatch(10, Duration.ofMillis(1)).blockFirst();
+
+        repository.markFailed("entry-1", claimed.getClaimToken(), "rejected").block();
+
+        assertEquals(0, repository.claimBatch(10, Duration.ofSeconds(30)).count().block());
+        assertEquals(OutboxStatus.FAILED, find("entry-1").getStatus());
+    }
+
+    private static void insert(TransactionOutboxEntry... entries) {
+        reactiveMongoTemplate.insertAll(List.of(entries)).blockLast();
+    }
+
+    private static TransactionOutboxEntry find(String id) {
+        return reactiveMongoTemplate.findById(id, TransactionOutboxEntry.class).block();
+    }
+
+    private static TransactionOutboxEntry pending(String id, LocalDateTime nextAttemptAt) {
+        return TransactionOutboxEntry.builder()
+                .id(id)
+                .debitCardId("card-1")
+                .accountId("acc-1")
+                .customerId("customer-1")
+                .amount(new BigDecimal("25.00"))
+                .status(OutboxStatus.PENDING)
+                .attempts(0)
+                .nextAttemptAt(nextAttemptAt)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,182 @@
+package com.nttdata.bankapp.msdebitcardservice.service;
+
+import com.nttdata.bankapp.msdebitcardservice.client.TransactionService;
+import com.nttdata.bankapp.msdebitcardservice.dto.TransactionDto;
+import com.nttdata.bankapp.msdebitcardservice.model.OutboxStatus;
+import com.nttdata.bankapp.msdebitcardservice.model.TransactionOutboxEntry;
+import com.nttdata.bankapp.msdebitcardservice.repository.TransactionOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas del publicador del outbox con el repositorio y el servicio de transacciones simulados.
+ */
+class TransactionOutboxPublisherTest {
+    private static final int MAX_ATTEMPTS = 3;
+    private static final Duration INITIAL_BACKOFF = Duration.ofSeconds(1);
+
+    private TransactionOutboxRepository repository;
+    private TransactionService transactionService;
+    private TransactionOutboxPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(TransactionOutboxRepository.class);
+        transactionService = mock(TransactionService.class);
+        when(repository.markPublished(anyString(), anyString(), anyString())).thenReturn(Mono.empty());
+        when(repository.reschedule(anyString(), anyString(), any(LocalDateTime.class), any())).thenReturn(Mono.empty());
+        when(repository.markFailed(anyString(), anyString(), any())).thenReturn(Mono.empty());
+
+        publisher = new TransactionOutboxPublisher(repository, transactionService, new SimpleMeterRegistry(),
+                true, Duration.ofMillis(10), 10, 4, Duration.ofSeconds(30), MAX_ATTEMPTS,
+                INITIAL_BACKOFF, Duration.ofMinutes(5), Duration.ofMillis(200), Duration.ofMinutes(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        publisher.stop();
+    }
+
+    @Test
+    void publishesBatchAndStoresTransactionIds() {
+        TransactionOutboxEntry first = entry("entry-1", 1);
+        TransactionOutboxEntry second = entry("entry-2", 1);
+        when(repository.claimBatch(anyInt(), any(Duration.class))).thenReturn(Flux.just(first, second), Flux.empty());
+        when(transactionService.createDebitCardTransactions(anyList()))
+                .thenReturn(Mono.just(List.of(transaction("tx-1"), transaction("tx-2"))));
+
+        publisher.start();
+
+        verify(repository, timeout(1000)).markPublished("entry-1", "token", "tx-1");
+        verify(repository, timeout(1000)).markPublished("entry-2", "token", "tx-2");
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TransactionService.DebitCardTransactionRequest>> requests = ArgumentCaptor.forClass(List.class);
+        verify(transactionService).createDebitCardTransactions(requests.capture());
+        // La referencia permite al servicio de transacciones descartar reenvíos de la misma entrada
+        assertEquals("entry-1", requests.getValue().get(0).getReference());
+        assertEquals("entry-2", requests.getValue().get(1).getReference());
+    }
+
+    @Test
+    void publishesOneByOneWhenBatchEndpointIsMissing() {
+        when(repository.claimBatch(anyInt(), any(Duration.class)))
+                .thenReturn(Flux.just(entry("entry-1", 1)), Flux.just(entry("entry-2", 1)), Flux.empty());
+        when(transactionService.createDebitCardTransactions(anyList()))
+                .thenReturn(Mono.error(WebClientResponseException.create(HttpStatus.NOT_FOUND.value(),
+                        "Not Found", null, null, null)));
+        when(transactionService.createDebitCardTransaction(any()))
+                .thenReturn(Mono.just(transaction("tx-1")), Mono.just(transaction("tx-2")));
+
+        publisher.start();
+
+        verify(repository, timeout(1000)).markPublished("entry-1", "token", "tx-1");
+        verify(repository, timeout(1000)).markPublished("entry-2", "token", "tx-2");
+        // Tras el 404 no se vuelve a probar el alta en lote hasta que pase el intervalo de recheck
+        verify(transactionService, times(1)).createDebitCardTransactions(anyList());
+        verify(repository, never()).reschedule(anyString(), anyString(), any(LocalDateTime.class), any());
+    }
+
+    @Test
+    void reschedulesWithExponentialBackoffWhenPublishingFails() {
+        when(repository.claimBatch(anyInt(), any(Duration.class))).thenReturn(Flux.just(entry("entry-1", 2)), Flux.empty());
+        when(transactionService.createDebitCardTransactions(anyList()))
+                .thenReturn(Mono.error(new IllegalStateException("transaction service unavailable")));
+
+        LocalDateTime before = LocalDateTime.now();
+        publisher.start();
+
+        ArgumentCaptor<LocalDateTime> nextAttemptAt = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(repository, timeout(1000)).reschedule(eq("entry-1"), eq("token"), nextAttemptAt.capture(),
+                eq("transaction service unavailable"));
+        // Segundo intento: el doble de la espera inicial
+        assertTrue(!nextAttemptAt.getValue().isBefore(before.plus(INITIAL_BACKOFF.multipliedBy(2))));
+        verify(repository, never()).markPublished(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void reschedulesWhenTransactionServiceDoesNotAnswer() {
+        when(repository.claimBatch(anyInt(), any(Duration.class))).thenReturn(Flux.just(entry("entry-1", 1)), Flux.empty());
+        when(transactionService.createDebitCardTransactions(anyList())).thenReturn(Mono.never());
+
+        publisher.start();
+
+        verify(repository, timeout(1000)).reschedule(eq("entry-1"), eq("token"), any(LocalDateTime.class), any());
+    }
+
+    @Test
+    void marksEntryFailedAfterMaxAttempts() {
+        when(repository.claimBatch(anyInt(), any(Duration.class)))
+                .thenReturn(Flux.just(entry("entry-1", MAX_ATTEMPTS)), Flux.empty());
+        when(transactionService.createDebitCardTransactions(anyList()))
+                .thenReturn(Mono.error(new IllegalStateException("rejected")));
+
+        publisher.start();
+
+        verify(repository, timeout(1000)).markFailed("entry-1", "token", "rejected");
+        verify(repository, after(100).never()).reschedule(anyString(), anyString(), any(LocalDateTime.class), any());
+    }
+
+    @Test
+    void rejectsBatchResponseWithWrongSize() {
+        when(repository.claimBatch(anyInt(), any(Duration.class)))
+                .thenReturn(Flux.just(entry("entry-1", 1), entry("entry-2", 1)), Flux.empty());
+        when(transactionService.createDebitCardTransactions(anyList()))
+                .thenReturn(Mono.just(List.of(transaction("tx-1"))));
+
+        publisher.start();
+
+        verify(repository, timeout(1000)).reschedule(eq("entry-1"), eq("token"), any(LocalDateTime.class), any());
+        verify(repository, timeout(1000)).reschedule(eq("entry-2"), eq("token"), any(LocalDateTime.class), any());
+        verify(repository, never()).markPublished(anyString(), anyString(), anyString());
+    }
+
+    // attempts ya incluye el intento actual, como lo deja claimBatch
+    private static TransactionOutboxEntry entry(String id, int attempts) {
+        return TransactionOutboxEntry.builder()
+                .id(id)
+                .debitCardId("card-1")
+                .accountId("acc-1")
+                .customerId("customer-1")
+                .amount(new BigDecimal("25.00"))
+                .status(OutboxStatus.PUBLISHING)
+                .attempts(attempts)
+                .claimToken("token")
+                .build();
+    }
+
+    private static TransactionDto transaction(String id) {
+        return TransactionDto.builder()
+                .id(id)
+                .debitCardId("card-1")
+                .accountId("acc-1")
+                .amount(new BigDecimal("25.00"))
+                .build();
+    }
+}
@@ -0,0 +1,213 @@
+package com.nttdata.bankapp.msdebitcardservice.service.impl;
+
+import com.nttdata.bankapp.msdebitcardservice.cache.CardNumberRegistry;
+import com.nttdata.bankapp.msdebitcardservice.cache.DebitCardCache;
+import com.nttdata.bankapp.msdebitcardservice.cache.IdempotencyStore;
+import com.nttdata.bankapp.msdebitcardservice.cache.RecentMovementStore;
+import com.nttdata.bankapp.msdebitcardservice.client.AccountNumberResolver;
+import com.nttdata.bankapp.msdebitcardservice.client.AccountService;
+import com.nttdata.bankapp.msdebitcardservice.client.CustomerService;
+import com.nttdata.bankapp.msdebitcardservice.client.TransactionService;
+import com.nttdata.bankapp.msdebitcardservice.dto.BalanceDto;
+import com.nttdata.bankapp.msdebitcardservice.dto.DebitCardOperationRequest;
+import com.nttdata.bankapp.msdebitcardservice.dto.PaymentResultDto;
+import com.nttdata.bankapp.msdebitcardservice.dto.TransactionDto;
+import com.nttdata.bankapp.msdebitcardservice.dto.WithdrawalResultDto;
+import com.nttdata.bankapp.msdebitcardservice.exception.ConcurrencyLimitExceededException;
+import com.nttdata.bankapp.msdebitcardservice.exception.InsufficientFundsException;
+import com.nttdata.bankapp.msdebitcardservice.model.DebitCard;
+import com.nttdata.bankapp.msdebitcardservice.repository.DebitCardRepository;
+import com.nttdata.bankapp.msdebitcardservice.repository.TransactionOutboxRepository;
+import com.nttdata.bankapp.msdebitcardservice.support.CardNumberGenerator;
+import com.nttdata.bankapp.msdebitcardservice.support.KeyedSequencer;
+import com.nttdata.bankapp.msdebitcardservice.support.SingleFlight;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import javax.validation.Validator;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas del flujo de pago con los servicios remotos y los repositorios simulados.
+ */
+class DebitCardServiceImplTest {
+    private static final BigDecimal AMOUNT = new BigDecimal("100.00");
+
+    private DebitCardRepository debitCardRepository;
+    private AccountService accountService;
+    private TransactionService transactionService;
+    private Validator validator;
+    private DebitCardServiceImpl debitCardService;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        debitCardRepository = mock(DebitCardRepository.class);
+        accountService = mock(AccountService.class);
+        transactionService = mock(TransactionService.class);
+        validator = mock(Validator.class);
+
+        debitCardService = new DebitCardServiceImpl(debitCardRepository, mock(DebitCardCache.class),
+                mock(CustomerService.class), accountService, mock(AccountNumberResolver.class), transactionService,
+                new KeyedSequencer("payments", meterRegistry), mock(IdempotencyStore.class), validator,
+                mock(CardNumberGenerator.class), mock(CardNumberRegistry.class), new SingleFlight(meterRegistry),
+                mock(RecentMovementStore.class), mock(TransactionOutboxRepository.class), meterRegistry);
+        ReflectionTestUtils.setField(debitCardService, "parallelBalanceProbe", true);
+        ReflectionTestUtils.setField(debitCardService, "balanceProbeConcurrency", 4);
+        ReflectionTestUtils.setField(debitCardService, "bulkPaymentConcurrency", 4);
+        ReflectionTestUtils.setField(debitCardService, "paymentTimeout", Duration.ofMillis(200));
+        ReflectionTestUtils.setField(debitCardService, "maxPageSize", 500);
+
+        when(debitCardRepository.findById("card-1")).thenReturn(Mono.just(DebitCard.builder()
+                .id("card-1")
+                .customerId("customer-1")
+                .primaryAccountId("acc-1")
+                .associatedAccountIds(List.of("acc-1", "acc-2"))
+                .active(true)
+                .build()));
+        when(transactionService.createDebitCardTransaction(any())).thenAnswer(invocation -> {
+            TransactionService.DebitCardTransactionRequest request = invocation.getArgument(0);
+            return Mono.just(TransactionDto.builder()
+                    .id("tx-1")
+                    .debitCardId(request.getDebitCardId())
+                    .accountId(request.getAccountId())
+                    .amount(request.getAmount())
+                    .build());
+        });
+    }
+
+    @Test
+    void parallelProbeDebitsFirstAccountWithFunds() {
+        when(accountService.getCachedBalance("acc-1")).thenReturn(Mono.just(balance("acc-1", "20.00")));
+        when(accountService.getCachedBalance("acc-2")).thenReturn(Mono.just(balance("acc-2", "500.00")));
+        when(accountService.withdrawIfSufficient("acc-2", AMOUNT)).thenReturn(Mono.just(approved()));
+
+        StepVerifier.create(debitCardService.processPayment(request()))
+                .expectNextMatches(transaction -> "acc-2".equals(transaction.getAccountId()))
+                .verifyComplete();
+        verify(accountService, never()).withdrawIfSufficient(eq("acc-1"), any());
+    }
+
+    @Test
+    void parallelProbeStillTriesAccountWhoseProbeFailed() {
+        when(accountService.getCachedBalance("acc-1")).thenReturn(Mono.error(new IllegalStateException("503")));
+        when(accountService.getCachedBalance("acc-2")).thenReturn(Mono.just(balance("acc-2", "0.00")));
+        when(accountService.withdrawIfSufficient("acc-1", AMOUNT)).thenReturn(Mono.just(approved()));
+
+        StepVerifier.create(debitCardService.processPayment(request()))
+                .expectNextMatches(transaction -> "acc-1".equals(transaction.getAccountId()))
+                .verifyComplete();
+    }
+
+    @Test
+    void parallelProbePropagatesServiceErrorInsteadOfInsufficientFunds() {
+        when(accountService.getCachedBalance(anyString()))
+                .thenReturn(Mono.error(new ConcurrencyLimitExceededException("account client saturated")));
+        when(accountService.withdrawIfSufficient(anyString(), any()))
+                .thenReturn(Mono.error(new ConcurrencyLimitExceededException("account client saturated")));
+
+        StepVerifier.create(debitCardService.processPayment(request()))
+                .verifyError(ConcurrencyLimitExceededException.class);
+    }
+
+    @Test
+    void parallelProbeReportsInsufficientFundsWhenNoAccountCovers() {
+        when(accountService.getCachedBalance("acc-1")).thenReturn(Mono.just(balance("acc-1", "20.00")));
+        when(accountService.getCachedBalance("acc-2")).thenReturn(Mono.just(balance("acc-2", "50.00")));
+
+        StepVerifier.create(debitCardService.processPayment(request()))
+                .verifyError(InsufficientFundsException.class);
+        verify(accountService, never()).withdrawIfSufficient(anyString(), any());
+    }
+
+    @Test
+    void bulkPaymentTimesOutStuckItemWithoutBlockingTheRest() {
+        when(validator.validate(any(DebitCardOperationRequest.class))).thenReturn(Set.of());
+        when(debitCardRepository.findById("card-2")).thenReturn(Mono.just(DebitCard.builder()
+                .id("card-2")
+                .customerId("customer-1")
+                .primaryAccountId("acc-3")
+                .associatedAccountIds(List.of("acc-3"))
+                .active(true)
+                .build()));
+        when(accountService.getCachedBalance("acc-1")).thenReturn(Mono.never());
+        when(accountService.getCachedBalance("acc-2")).thenReturn(Mono.never());
+        when(accountService.getCachedBalance("acc-3")).thenReturn(Mono.just(balance("acc-3", "500.00")));
+        when(accountService.withdrawIfSufficient("acc-3", AMOUNT)).thenReturn(Mono.just(approved()));
+
+        StepVerifier.create(debitCardService.processPayments(Flux.just(request("card-1"), request("card-2")))
+                        .collectSortedList(Comparator.comparingLong(PaymentResultDto::getIndex)))
+                .assertNext(results -> {
+                    assertFalse(results.get(0).isSuccess());
+                    assertTrue(results.get(0).getError().contains("did not complete"));
+                    assertTrue(results.get(1).isSuccess());
+                })
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void findAllReadsOneProjectedPage() {
+        when(debitCardRepository.findListViewBy(any(Pageable.class))).thenReturn(Flux.just(DebitCard.builder()
+                .id("card-1")
+                .customerId("customer-1")
+                .build()));
+
+        StepVerifier.create(debitCardService.findAll())
+                .expectNextMatches(card -> "card-1".equals(card.getId()) && card.getCvv() == null)
+                .verifyComplete();
+
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        verify(debitCardRepository).findListViewBy(pageable.capture());
+        assertEquals(500, pageable.getValue().getPageSize());
+        verify(debitCardRepository, never()).findAll();
+    }
+
+    private static DebitCardOperationRequest request() {
+        return request("card-1");
+    }
+
+    private static DebitCardOperationRequest request(String debitCardId) {
+        return DebitCardOperationRequest.builder()
+                .debitCardId(debitCardId)
+                .customerId("customer-1")
+                .amount(AMOUNT)
+                .description("purchase")
+                .build();
+    }
+
+    private static BalanceDto balance(String accountId, String amount) {
+        return BalanceDto.builder()
+                .accountId(accountId)
+                .balance(new BigDecimal(amount))
+                .build();
+    }
+
+    private static WithdrawalResultDto approved() {
+        return WithdrawalResultDto.builder()
+                .approved(true)
+                .build();
+    }
+}
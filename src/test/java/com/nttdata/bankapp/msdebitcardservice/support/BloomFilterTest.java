@@ -0,0 +1,63 @@
+package com.nttdata.bankapp.msdebitcardservice.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTest {
+
+    @Test
+    void neverReturnsFalseNegatives() {
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+        Random random = new Random(7);
+        long[] keys = new long[100_000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextLong();
+            filter.put(keys[i]);
+        }
+
+        for (long key : keys) {
+            assertTrue(filter.mightContain(key), "key " + key);
+        }
+    }
+
+    @Test
+    void keepsFalsePositiveRateNearConfiguredRate() {
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+        for (long key = 0; key < 100_000; key++) {
+            filter.put(4000000000000000L + key);
+        }
+
+        int falsePositives = 0;
+        int probes = 100_000;
+        for (long key = 0; key < probes; key++) {
+            if (filter.mightContain(5000000000000000L + key)) {
+                falsePositives++;
+            }
+        }
+
+        // Margen amplio sobre el 1% configurado para que la prueba no sea inestable
+        assertTrue(falsePositives < probes * 0.02, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void emptyFilterContainsNothing() {
+        BloomFilter filter = new BloomFilter(1_000, 0.01);
+
+        assertFalse(filter.mightContain(0L));
+        assertFalse(filter.mightContain(4000000000000002L));
+        assertFalse(filter.mightContain(-1L));
+    }
+
+    @Test
+    void toleratesDegenerateSizes() {
+        BloomFilter filter = new BloomFilter(0, 0.5);
+
+        filter.put(42L);
+
+        assertTrue(filter.mightContain(42L));
+    }
+}
@@ -0,0 +1,53 @@
+package com.nttdata.bankapp.msdebitcardservice.support;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CardNumberGeneratorTest {
+
+    @Test
+    void generatesValidUniqueNumbersWithPrefix() {
+        CardNumberGenerator generator = new CardNumberGenerator(new SimpleMeterRegistry(), "4", 64, 1_000, 0.01);
+        Set<String> numbers = new HashSet<>();
+
+        for (int i = 0; i < 5_000; i++) {
+            String number = generator.nextCardNumber();
+            long value = CardNumbers.parse(number);
+            assertNotEquals(CardNumbers.INVALID, value, number);
+            assertTrue(number.startsWith("4"), number);
+            assertEquals(CardNumbers.luhnCheckDigit(value / 10), value % 10, number);
+            numbers.add(number);
+        }
+
+        assertEquals(5_000, numbers.size());
+    }
+
+    @Test
+    void keepsIssuingWhenFilterRejectsEveryCandidate() {
+        // Con un prefijo de 8 dígitos quedan solo 10^7 números; se marcan casi todos como emitidos
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CardNumberGenerator generator = new CardNumberGenerator(meterRegistry, "40000000", 16, 10_000_000, 0.5);
+        for (long payload = 400000000000000L; payload < 400000010000000L; payload++) {
+            generator.markIssued(payload * 10 + CardNumbers.luhnCheckDigit(payload));
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertNotEquals(CardNumbers.INVALID, CardNumbers.parse(generator.nextCardNumber()));
+        }
+        assertTrue(meterRegistry.get("card.number.candidates.unfiltered").counter().count() > 0);
+    }
+
+    @Test
+    void rejectsInvalidPrefix() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new CardNumberGenerator(new SimpleMeterRegistry(), "4a", 16, 1_000, 0.01));
+    }
+}
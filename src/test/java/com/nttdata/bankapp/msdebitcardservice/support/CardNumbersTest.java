@@ -0,0 +1,82 @@
+package com.nttdata.bankapp.msdebitcardservice.support;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CardNumbersTest {
+
+    @Test
+    void parsesFormattedAndPlainNumbers() {
+        assertEquals(4539148803436467L, CardNumbers.parse("4539-1488-0343-6467"));
+        assertEquals(4539148803436467L, CardNumbers.parse("4539148803436467"));
+        assertEquals(1L, CardNumbers.parse("0000-0000-0000-0001"));
+    }
+
+    @Test
+    void rejectsMalformedNumbers() {
+        assertEquals(CardNumbers.INVALID, CardNumbers.parse(null));
+        assertEquals(CardNumbers.INVALID, CardNumbers.parse(""));
+        assertEquals(CardNumbers.INVALID, CardNumbers.parse("4539-1488-0343-646"));
+        assertEquals(CardNumbers.INVALID, CardNumbers.parse("45391488034364670"));
+        assertEquals(CardNumbers.INVALID, CardNumbers.parse("4539 1488 0343 6467"));
+        assertEquals(CardNumbers.INVALID, CardNumbers.parse("45391-488-0343-6467"));
+        assertEquals(CardNumbers.INVALID, CardNumbers.parse("4539-1488-0343-64a7"));
+        assertEquals(CardNumbers.INVALID, CardNumbers.parse("453-91488-0343-6467"));
+        // 16 caracteres con guiones no son 16 dígitos
+        assertEquals(CardNumbers.INVALID, CardNumbers.parse("4539-1488-034364"));
+    }
+
+    @Test
+    void formatsWithLeadingZeros() {
+        assertEquals("4539-1488-0343-6467", CardNumbers.format(4539148803436467L));
+        assertEquals("0000-0000-0000-0001", CardNumbers.format(1L));
+        assertEquals("0000-0000-0000-0000", CardNumbers.format(0L));
+    }
+
+    @Test
+    void formatAndParseRoundTrip() {
+        long cardNumber = 4000123456789010L;
+
+        assertEquals(cardNumber, CardNumbers.parse(CardNumbers.format(cardNumber)));
+    }
+
+    @Test
+    void computesLuhnCheckDigit() {
+        // Números de prueba conocidos: 4539 1488 0343 6467 y 7992739871-3
+        assertEquals(7, CardNumbers.luhnCheckDigit(453914880343646L));
+        assertEquals(3, CardNumbers.luhnCheckDigit(7992739871L));
+        // Suma múltiplo de 10: dígito verificador 0
+        assertEquals(0, CardNumbers.luhnCheckDigit(0L));
+        assertEquals(0, CardNumbers.luhnCheckDigit(19L));
+        // Dígitos que al duplicarse superan 9
+        assertEquals(9, CardNumbers.luhnCheckDigit(5L));
+        assertEquals(1, CardNumbers.luhnCheckDigit(9L));
+        assertEquals(2, CardNumbers.luhnCheckDigit(99L));
+    }
+
+    @Test
+    void generatedNumbersPassLuhnValidation() {
+        for (long payload = 400000000000000L; payload < 400000000000000L + 1_000; payload++) {
+            long cardNumber = payload * 10 + CardNumbers.luhnCheckDigit(payload);
+            assertEquals(0, luhnSum(cardNumber) % 10, "card number " + cardNumber);
+        }
+    }
+
+    // Validación de Luhn independiente de la implementación bajo prueba
+    private static int luhnSum(long cardNumber) {
+        String digits = Long.toString(cardNumber);
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            int digit = digits.charAt(digits.length() - 1 - i) - '0';
+            if (i % 2 == 1) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+        }
+        return sum;
+    }
+}
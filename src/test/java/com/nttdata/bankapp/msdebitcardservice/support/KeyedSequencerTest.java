@@ -0,0 +1,143 @@
+package com.nttdata.bankapp.msdebitcardservice.support;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyedSequencerTest {
+    private SimpleMeterRegistry meterRegistry;
+    private KeyedSequencer sequencer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        sequencer = new KeyedSequencer("test", meterRegistry);
+    }
+
+    @Test
+    void runsTasksOfSameKeyInSubmissionOrder() {
+        List<Integer> completed = new CopyOnWriteArrayList<>();
+
+        // Las primeras tareas son las más lentas: en paralelo terminarían al revés
+        Flux<Integer> tasks = Flux.range(0, 3)
+                .flatMap(i -> sequencer.submit("card-1", () -> Mono.delay(Duration.ofMillis(60L - i * 20L))
+                        .thenReturn(i)
+                        .doOnNext(completed::add)));
+
+        StepVerifier.create(tasks)
+                .expectNextCount(3)
+                .verifyComplete();
+        assertEquals(List.of(0, 1, 2), completed);
+    }
+
+    @Test
+    void runsTasksOfDifferentKeysIndependently() {
+        Sinks.One<String> blocker = Sinks.one();
+        Disposable blocked = sequencer.submit("card-1", blocker::asMono).subscribe();
+
+        StepVerifier.create(sequencer.submit("card-2", () -> Mono.just("done")))
+                .expectNext("done")
+                .verifyComplete();
+
+        blocker.tryEmitValue("released");
+        blocked.dispose();
+    }
+
+    @Test
+    void skipsQueuedTaskCancelledBeforeItStarts() {
+        Sinks.One<String> blocker = Sinks.one();
+        AtomicBoolean cancelledTaskStarted = new AtomicBoolean();
+        List<String> results = new CopyOnWriteArrayList<>();
+
+        sequencer.submit("card-1", blocker::asMono).subscribe(results::add);
+        Disposable cancelled = sequencer.submit("card-1", () -> {
+            cancelledTaskStarted.set(true);
+            return Mono.just("cancelled");
+        }).subscribe(results::add);
+        sequencer.submit("card-1", () -> Mono.just("third")).subscribe(results::add);
+
+        cancelled.dispose();
+        blocker.tryEmitValue("first");
+
+        assertFalse(cancelledTaskStarted.get());
+        assertEquals(List.of("first", "third"), results);
+    }
+
+    @Test
+    void cancellingRunningTaskKeepsTheKeyUntilItTerminates() {
+        Sinks.One<String> blocker = Sinks.one();
+        AtomicBoolean runningTaskCancelled = new AtomicBoolean();
+        AtomicBoolean nextTaskStarted = new AtomicBoolean();
+
+        Disposable running = sequencer.submit("card-1", () -> blocker.asMono()
+                        .doOnCancel(() -> runningTaskCancelled.set(true)))
+                .subscribe();
+        running.dispose();
+
+        List<String> results = new CopyOnWriteArrayList<>();
+        sequencer.submit("card-1", () -> {
+            nextTaskStarted.set(true);
+            return Mono.just("next");
+        }).subscribe(results::add);
+
+        assertFalse(runningTaskCancelled.get());
+        assertFalse(nextTaskStarted.get());
+
+        blocker.tryEmitValue("first");
+
+        assertEquals(List.of("next"), results);
+    }
+
+    @Test
+    void drainsLongRunsOfSynchronousTasksWithoutRecursion() {
+        Sinks.One<Integer> blocker = Sinks.one();
+        AtomicInteger completed = new AtomicInteger();
+        int tasks = 100_000;
+
+        sequencer.submit("card-1", blocker::asMono).subscribe(value -> completed.incrementAndGet());
+        for (int i = 0; i < tasks; i++) {
+            int value = i;
+            sequencer.submit("card-1", () -> Mono.just(value)).subscribe(result -> completed.incrementAndGet());
+        }
+        blocker.tryEmitValue(-1);
+
+        assertEquals(tasks + 1, completed.get());
+    }
+
+    @Test
+    void removesKeyQueueOnceDrained() {
+        StepVerifier.create(sequencer.submit("card-1", () -> Mono.just("done")))
+                .expectNext("done")
+                .verifyComplete();
+
+        assertEquals(0.0, meterRegistry.get("sequencer.keys").gauge().value());
+        assertEquals(0.0, meterRegistry.get("sequencer.queue.depth").gauge().value());
+    }
+
+    @Test
+    void propagatesTaskErrorsAndContinuesWithNextTask() {
+        StepVerifier.create(sequencer.submit("card-1", () -> {
+                    throw new IllegalStateException("boom");
+                }))
+                .verifyError(IllegalStateException.class);
+
+        AtomicBoolean ran = new AtomicBoolean();
+        sequencer.submit("card-1", () -> Mono.fromRunnable(() -> ran.set(true))).subscribe();
+        assertTrue(ran.get());
+    }
+}
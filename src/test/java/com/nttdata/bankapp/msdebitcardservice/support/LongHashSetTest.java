@@ -0,0 +1,113 @@
+package com.nttdata.bankapp.msdebitcardservice.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongHashSetTest {
+
+    @Test
+    void addsContainsAndRemovesValues() {
+        LongHashSet set = new LongHashSet(16);
+
+        assertTrue(set.add(4000000000000002L));
+        assertFalse(set.add(4000000000000002L));
+        assertTrue(set.contains(4000000000000002L));
+        assertFalse(set.contains(4000000000000010L));
+        assertEquals(1, set.size());
+
+        assertTrue(set.remove(4000000000000002L));
+        assertFalse(set.remove(4000000000000002L));
+        assertFalse(set.contains(4000000000000002L));
+        assertEquals(0, set.size());
+    }
+
+    @Test
+    void handlesZeroSeparatelyFromEmptySlots() {
+        LongHashSet set = new LongHashSet(16);
+
+        assertFalse(set.contains(0L));
+        assertTrue(set.add(0L));
+        assertFalse(set.add(0L));
+        assertTrue(set.contains(0L));
+        assertEquals(1, set.size());
+        assertTrue(set.remove(0L));
+        assertFalse(set.contains(0L));
+    }
+
+    @Test
+    void growsBeyondExpectedSize() {
+        LongHashSet set = new LongHashSet(4);
+
+        for (long value = 1; value <= 10_000; value++) {
+            set.add(value);
+        }
+
+        assertEquals(10_000, set.size());
+        for (long value = 1; value <= 10_000; value++) {
+            assertTrue(set.contains(value));
+        }
+        assertFalse(set.contains(10_001));
+    }
+
+    @Test
+    void backwardShiftRemovalKeepsCollidingValuesReachable() {
+        Random random = new Random(11);
+        for (int round = 0; round < 1_000; round++) {
+            // 8 valores en 16 posiciones (carga 0.5, sin redimensionar) forman cadenas de sondeo,
+            // incluidas las que dan la vuelta al final del arreglo
+            LongHashSet set = new LongHashSet(8);
+            List<Long> values = new ArrayList<>();
+            while (values.size() < 8) {
+                long value = 1 + random.nextInt(1_000_000);
+                if (set.add(value)) {
+                    values.add(value);
+                }
+            }
+
+            Collections.shuffle(values, random);
+            for (int removed = 0; removed < values.size(); removed++) {
+                assertTrue(set.remove(values.get(removed)));
+                for (int i = 0; i < values.size(); i++) {
+                    assertEquals(i > removed, set.contains(values.get(i)), "value " + values.get(i));
+                }
+            }
+            assertEquals(0, set.size());
+        }
+    }
+
+    @Test
+    void matchesHashSetUnderRandomOperations() {
+        LongHashSet set = new LongHashSet(64);
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200_000; i++) {
+            // Un rango chico fuerza colisiones, borrados y reinserciones
+            long value = random.nextInt(2_000);
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertEquals(expected.add(value), set.add(value));
+                    break;
+                case 1:
+                    assertEquals(expected.remove(value), set.remove(value));
+                    break;
+                default:
+                    assertEquals(expected.contains(value), set.contains(value));
+            }
+        }
+        assertEquals(expected.size(), set.size());
+        for (long value = 0; value < 2_000; value++) {
+            assertEquals(expected.contains(value), set.contains(value), "value " + value);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.nttdata.bankapp.msdebitcardservice.support;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Pruebas del hedger: qué respuestas alimentan la ventana de latencias usada para el retardo.
+ */
+class RequestHedgerTest {
+    private static final Duration MIN_DELAY = Duration.ofMillis(1);
+    private static final Duration MAX_DELAY = Duration.ofMillis(50);
+
+    private SimpleMeterRegistry meterRegistry;
+    private RequestHedger hedger;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        hedger = new RequestHedger("test", meterRegistry, true, 0.95, MIN_DELAY, MAX_DELAY, 1.0, 10.0, 10);
+    }
+
+    @Test
+    void recordsLatencyWhenPrimaryResponds() {
+        StepVerifier.create(hedger.execute(() -> Mono.just("primary")))
+                .expectNext("primary")
+                .verifyComplete();
+        StepVerifier.create(hedger.execute(Mono::empty))
+                .verifyComplete();
+
+        assertEquals(2, samples());
+    }
+
+    @Test
+    void doesNotRecordLatencyWhenHedgeWins() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        StepVerifier.create(hedger.execute(() -> attempts.getAndIncrement() == 0 ? Mono.never() : Mono.just("hedge")))
+                .expectNext("hedge")
+                .verifyComplete();
+
+        assertEquals(0, samples());
+        assertEquals(1.0, meterRegistry.get("client.hedge.requests").tag("result", "won").counter().count());
+    }
+
+    @Test
+    void doesNotRecordLatencyWhenCallerCancels() {
+        RequestHedger noBudget = new RequestHedger("test", meterRegistry, true, 0.95, MIN_DELAY, MAX_DELAY,
+                0.0, 10.0, 10);
+
+        StepVerifier.create(noBudget.execute(Mono::never).timeout(Duration.ofMillis(100)))
+                .verifyError(TimeoutException.class);
+
+        assertEquals(0, (int) ReflectionTestUtils.getField(noBudget, "samples"));
+    }
+
+    @Test
+    void hedgeDelayFollowsObservedLatency() {
+        for (int i = 0; i < 10; i++) {
+            StepVerifier.create(hedger.execute(() -> Mono.just("primary")))
+                    .expectNext("primary")
+                    .verifyComplete();
+        }
+
+        assertEquals(MIN_DELAY, ReflectionTestUtils.getField(hedger, "hedgeDelay"));
+    }
+
+    private int samples() {
+        return (int) ReflectionTestUtils.getField(hedger, "samples");
+    }
+}
@@ -0,0 +1,71 @@
+package com.nttdata.bankapp.msdebitcardservice.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScalableBloomFilterTest {
+
+    @Test
+    void growsInsteadOfSaturating() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(10_000, 0.01);
+        for (long key = 0; key < 300_000; key++) {
+            filter.put(4000000000000000L + key);
+        }
+
+        int falsePositives = 0;
+        int probes = 100_000;
+        for (long key = 0; key < probes; key++) {
+            if (filter.mightContain(5000000000000000L + key)) {
+                falsePositives++;
+            }
+        }
+
+        // Con 30 veces la capacidad inicial, un filtro fijo rechazaría casi todo
+        assertTrue(filter.layers() > 1, "layers: " + filter.layers());
+        assertTrue(falsePositives < probes * 0.02, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void neverReturnsFalseNegativesAcrossLayers() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1_000, 0.01);
+        Random random = new Random(11);
+        long[] keys = new long[50_000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextLong();
+            filter.put(keys[i]);
+        }
+
+        for (long key : keys) {
+            assertTrue(filter.mightContain(key), "key " + key);
+        }
+        assertEquals(keys.length, filter.size());
+    }
+
+    @Test
+    void growsSafelyUnderConcurrentInserts() throws InterruptedException {
+        ScalableBloomFilter filter = new ScalableBloomFilter(100, 0.01);
+        int threads = 8;
+        int keysPerThread = 20_000;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            long base = (long) t * keysPerThread;
+            workers[t] = new Thread(() -> {
+                for (long key = base; key < base + keysPerThread; key++) {
+                    filter.put(key);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        for (long key = 0; key < (long) threads * keysPerThread; key++) {
+            assertTrue(filter.mightContain(key), "key " + key);
+        }
+    }
+}
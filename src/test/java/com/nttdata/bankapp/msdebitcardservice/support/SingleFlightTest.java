@@ -0,0 +1,94 @@
+package com.nttdata.bankapp.msdebitcardservice.support;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SingleFlightTest {
+    private SimpleMeterRegistry meterRegistry;
+    private SingleFlight singleFlight;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        singleFlight = new SingleFlight(meterRegistry);
+    }
+
+    @Test
+    void joinsConcurrentCallsWithSameKey() {
+        Sinks.One<String> response = Sinks.one();
+        AtomicInteger calls = new AtomicInteger();
+        List<String> results = new CopyOnWriteArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            singleFlight.execute("balance", "card-1", () -> {
+                calls.incrementAndGet();
+                return response.asMono();
+            }).subscribe(results::add);
+        }
+        response.tryEmitValue("100");
+
+        assertEquals(1, calls.get());
+        assertEquals(List.of("100", "100", "100"), results);
+        assertEquals(1.0, meterRegistry.get("singleflight.calls").tag("role", "leader").counter().count());
+        assertEquals(2.0, meterRegistry.get("singleflight.calls").tag("role", "follower").counter().count());
+    }
+
+    @Test
+    void doesNotJoinCallsWithDifferentKeys() {
+        AtomicInteger calls = new AtomicInteger();
+
+        for (String key : List.of("card-1", "card-2")) {
+            StepVerifier.create(singleFlight.execute("balance", key, () -> Mono.fromCallable(calls::incrementAndGet)))
+                    .expectNextCount(1)
+                    .verifyComplete();
+        }
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void runsCallAgainOnceThePreviousOneCompleted() {
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 1; i <= 2; i++) {
+            int expected = i;
+            StepVerifier.create(singleFlight.execute("balance", "card-1", () -> Mono.fromCallable(calls::incrementAndGet)))
+                    .expectNext(expected)
+                    .verifyComplete();
+        }
+    }
+
+    @Test
+    void sharesErrorsWithFollowersAndForgetsThem() {
+        Sinks.One<String> response = Sinks.one();
+        AtomicInteger calls = new AtomicInteger();
+
+        Mono<String> leader = singleFlight.execute("balance", "card-1", () -> {
+            calls.incrementAndGet();
+            return response.asMono();
+        });
+        Mono<String> follower = singleFlight.execute("balance", "card-1", () -> {
+            calls.incrementAndGet();
+            return response.asMono();
+        });
+
+        StepVerifier.create(leader.zipWith(follower))
+                .then(() -> response.tryEmitError(new IllegalStateException("down")))
+                .verifyError(IllegalStateException.class);
+        assertEquals(1, calls.get());
+
+        StepVerifier.create(singleFlight.execute("balance", "card-1", () -> Mono.just("recovered")))
+                .expectNext("recovered")
+                .verifyComplete();
+    }
+}